@@ -26,7 +26,8 @@ import java.util.concurrent.CompletableFuture;
 
 /**
  * This channel handler accumulates input data ({@link ByteBuf} and {@link HttpContent}), and when
- * {@link LastHttpContent} is received completes a {@link #future} with the accumulated data.
+ * {@link LastHttpContent} is received completes a {@link #future} with the accumulated data. Before that, the end of
+ * the body is signalled to the next handler with an empty {@link LastHttpContent}.
  */
 final class BufferFutureHandler extends ChannelInboundHandlerAdapter {
     final CompletableFuture<ByteBuf> future = new CompletableFuture<>();
@@ -53,12 +54,14 @@ final class BufferFutureHandler extends ChannelInboundHandlerAdapter {
             ((HttpContent) msg).release();
 
             if (msg instanceof LastHttpContent) {
-                if (!future.complete(buffer.retain())) {
+                CompositeByteBuf buffer = this.buffer;
+                this.buffer = null;
+                // hand the connection back before completing, so that it can be reused by a follow-up request
+                ctx.pipeline().remove(this);
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+                if (!future.complete(buffer)) {
                     buffer.release();
                 }
-                buffer.release();
-                buffer = null;
-                ctx.pipeline().remove(this);
             } else {
                 ctx.read();
             }
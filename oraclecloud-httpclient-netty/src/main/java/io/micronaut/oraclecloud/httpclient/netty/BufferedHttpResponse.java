@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.oracle.bmc.http.client.Serialization;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Response whose body has already been received completely, used to hand the same response to several callers (see
+ * {@link RequestCoalescing}) or to serve a body from the {@link ResponseCache}. Each instance holds its own reference
+ * to the body, released by {@link #close()}. Unlike {@link NettyHttpResponse}, the body can be consumed more than
+ * once.
+ */
+final class BufferedHttpResponse implements PublishingHttpResponse {
+    private final int status;
+    private final HttpHeaders headers;
+    private final ByteBuf body;
+    private final Executor offloadExecutor;
+    private final EventExecutor publishExecutor;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private HeaderMap headerMap;
+
+    /**
+     * @param status          The response status
+     * @param headers         The response headers, must not be modified anymore
+     * @param body            The body, released by {@link #close()}
+     * @param offloadExecutor The executor to run data binding on, or {@code null}
+     * @param publishExecutor The executor that signals the subscriber of {@link #publishBody()}
+     */
+    BufferedHttpResponse(int status, HttpHeaders headers, ByteBuf body, Executor offloadExecutor, EventExecutor publishExecutor) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.offloadExecutor = offloadExecutor;
+        this.publishExecutor = publishExecutor;
+    }
+
+    HttpHeaders nettyHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return The body, retained for the caller
+     */
+    ByteBuf retainedBody() {
+        return body.retainedDuplicate();
+    }
+
+    @Override
+    public int status() {
+        return status;
+    }
+
+    @Override
+    public Map<String, List<String>> headers() {
+        HeaderMap headerMap = this.headerMap;
+        if (headerMap == null) {
+            headerMap = new HeaderMap(headers);
+            this.headerMap = headerMap;
+        }
+        return headerMap;
+    }
+
+    @Override
+    public CompletionStage<InputStream> streamBody() {
+        return CompletableFuture.completedFuture(new ByteBufInputStream(body.retainedDuplicate(), true));
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> publishBody() {
+        PublishingBodyHandler publisher = new PublishingBodyHandler(publishExecutor);
+        ByteBuf copy = body.retainedDuplicate();
+        publishExecutor.execute(() -> publisher.publishAll(copy));
+        return publisher;
+    }
+
+    private <T> CompletionStage<T> jsonBody(JavaType type) {
+        ObjectMapper mapper = Serialization.getObjectMapper();
+        return withBody(buf -> {
+            try {
+                return mapper.readValue((InputStream) new ByteBufInputStream(buf), type);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public <T> CompletionStage<T> body(Class<T> type) {
+        return jsonBody(Serialization.getObjectMapper().constructType(type));
+    }
+
+    @Override
+    public <T> CompletionStage<List<T>> listBody(Class<T> type) {
+        CollectionType listType = Serialization.getObjectMapper().getTypeFactory().constructCollectionType(List.class, type);
+        return jsonBody(listType);
+    }
+
+    @Override
+    public CompletionStage<String> textBody() {
+        return withBody(buf -> buf.toString(StandardCharsets.UTF_8));
+    }
+
+    private <T> CompletionStage<T> withBody(Function<ByteBuf, T> fn) {
+        ByteBuf copy = body.retainedDuplicate();
+        Function<ByteBuf, T> releasing = buf -> {
+            try {
+                return fn.apply(buf);
+            } finally {
+                buf.release();
+            }
+        };
+        if (offloadExecutor == null) {
+            return CompletableFuture.completedFuture(copy).thenApply(releasing);
+        } else {
+            return CompletableFuture.supplyAsync(() -> copy, offloadExecutor).thenApply(releasing);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            body.release();
+        }
+    }
+}
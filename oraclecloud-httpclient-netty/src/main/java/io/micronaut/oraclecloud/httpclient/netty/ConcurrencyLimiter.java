@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Adaptive (AIMD) limit on the number of concurrent requests of a client. The limit grows by about one for every
+ * limit's worth of requests that complete normally while the limit is in use, and shrinks by a constant factor when the
+ * server signals overload: a 429 or 503 response, a read timeout, or response times far above the recent minimum.
+ * Requests above the limit wait in a queue without blocking a thread, and are rejected if the queue is full.
+ * <p>
+ * Response times are judged by a smoothed signal rather than by single samples: the moving average of whether a
+ * response was slow. Latency only counts as overload once most recent responses are slow, i.e. when the median
+ * response time exceeds the tolerance, so a single slow operation does not shrink the limit.
+ */
+final class ConcurrencyLimiter {
+    static final int INITIAL_LIMIT = 20;
+    static final int MIN_LIMIT = 1;
+    static final int MAX_LIMIT = 1000;
+    private static final double BACKOFF_RATIO = 0.9;
+    /**
+     * A response time above this multiple of the minimum response time counts as slow.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+    /**
+     * Weight of a new sample in the moving average of slow responses, about one in the last ten responses.
+     */
+    private static final double SLOW_SMOOTHING = 0.1;
+    /**
+     * Moving average of slow responses above which latency counts as overload.
+     */
+    private static final double SLOW_THRESHOLD = 0.5;
+    /**
+     * Number of samples after which the minimum response time is reset, to follow changes of the baseline.
+     */
+    private static final int LATENCY_WINDOW = 1000;
+
+    private final NettyClientMetrics metrics;
+    private final int maxQueue;
+
+    // guarded by this
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private double limit = INITIAL_LIMIT;
+    private int reportedLimit = INITIAL_LIMIT;
+    private int inFlight = 0;
+    private long minLatency = Long.MAX_VALUE;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowSamples = 0;
+    private double slowAverage = 0;
+    /**
+     * Number of requests that were in flight during the last decrease and have not completed yet. The limit is only
+     * decreased again after they have completed, so one burst of overload signals only counts once.
+     */
+    private int pendingSinceDecrease = 0;
+    private boolean closed = false;
+
+    /**
+     * @param metrics  The metrics to report to
+     * @param maxQueue Maximum number of waiting requests
+     */
+    ConcurrencyLimiter(NettyClientMetrics metrics, int maxQueue) {
+        this.metrics = metrics;
+        this.maxQueue = maxQueue;
+        metrics.concurrencyLimit.add(INITIAL_LIMIT);
+    }
+
+    /**
+     * Acquire a permit. Must be followed by exactly one call to {@link #release(long, boolean)} once the future has
+     * completed successfully. If the future is cancelled before that, no release is necessary.
+     *
+     * @return Future that completes when the request may be sent, or fails with a
+     * {@link RejectedExecutionException} if the queue is full
+     */
+    CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean queued;
+        synchronized (this) {
+            queued = inFlight >= (int) limit;
+            if (queued) {
+                if (waiting.size() >= maxQueue) {
+                    metrics.concurrencyRejections.increment();
+                    future.completeExceptionally(new RejectedExecutionException(
+                            "Adaptive concurrency limit reached and " + waiting.size() + " requests are already waiting"));
+                    return future;
+                }
+                waiting.add(future);
+                metrics.concurrencyQueueDepth.increment();
+            } else {
+                inFlight++;
+            }
+        }
+        if (queued) {
+            // give up the place in the queue when cancelled
+            future.whenComplete((v, t) -> {
+                if (future.isCancelled()) {
+                    removeWaiting(future);
+                }
+            });
+        } else {
+            future.complete(null);
+        }
+        return future;
+    }
+
+    private synchronized void removeWaiting(CompletableFuture<Void> future) {
+        if (waiting.remove(future)) {
+            metrics.concurrencyQueueDepth.decrement();
+        }
+    }
+
+    /**
+     * Release a permit.
+     *
+     * @param latencyNanos Time until the response headers arrived, or {@code -1} if there was no response
+     * @param overloaded   Whether the server signalled overload
+     */
+    void release(long latencyNanos, boolean overloaded) {
+        List<CompletableFuture<Void>> next = new ArrayList<>();
+        synchronized (this) {
+            boolean limited = inFlight >= limit / 2;
+            inFlight--;
+            boolean mayDecrease = pendingSinceDecrease == 0;
+            if (!mayDecrease) {
+                pendingSinceDecrease--;
+            }
+            boolean slow = false;
+            if (!overloaded && latencyNanos >= 0) {
+                windowMinLatency = Math.min(windowMinLatency, latencyNanos);
+                if (++windowSamples >= LATENCY_WINDOW || minLatency == Long.MAX_VALUE) {
+                    minLatency = windowMinLatency;
+                    windowMinLatency = Long.MAX_VALUE;
+                    windowSamples = 0;
+                }
+                slow = latencyNanos > LATENCY_TOLERANCE * minLatency;
+                slowAverage += ((slow ? 1 : 0) - slowAverage) * SLOW_SMOOTHING;
+                overloaded = slowAverage > SLOW_THRESHOLD;
+            }
+            if (overloaded) {
+                if (mayDecrease) {
+                    limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                    pendingSinceDecrease = inFlight;
+                }
+            } else if (latencyNanos >= 0 && limited && !slow) {
+                // additive increase, about one per limit's worth of fast completions
+                limit = Math.min(MAX_LIMIT, limit + 1 / limit);
+            }
+            int newLimit = (int) limit;
+            if (newLimit != reportedLimit && !closed) {
+                metrics.concurrencyLimit.add(newLimit - reportedLimit);
+                reportedLimit = newLimit;
+            }
+            while (inFlight < newLimit && !waiting.isEmpty()) {
+                next.add(waiting.poll());
+                metrics.concurrencyQueueDepth.decrement();
+                inFlight++;
+            }
+        }
+        for (CompletableFuture<Void> future : next) {
+            if (!future.complete(null)) {
+                // cancelled while waiting
+                release(-1, false);
+            }
+        }
+    }
+
+    /**
+     * Remove this limiter from the metrics, when the client is closed.
+     */
+    synchronized void close() {
+        closed = true;
+        metrics.concurrencyLimit.add(-reportedLimit);
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.ssl.SslHandler;
+
+import javax.net.ssl.SSLSession;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * First handler of every connection. Reports the connect and TLS handshake times, and the bytes on the wire, to the
+ * {@link NettyClientListener}s, and emits the corresponding {@link JfrEvents}. Stays in the pipeline for the lifetime
+ * of the connection.
+ */
+final class ConnectionMetricsHandler extends ChannelDuplexHandler {
+    private final NettyClientMetrics metrics;
+    private final String host;
+
+    ConnectionMetricsHandler(NettyClientMetrics metrics, String host) {
+        this.metrics = metrics;
+        this.host = host;
+    }
+
+    @Override
+    public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
+        long start = System.nanoTime();
+        JfrEvents.ConnectEvent event = JfrEvents.connectEvent();
+        if (event != null) {
+            event.begin();
+            event.host = host;
+            if (remoteAddress instanceof InetSocketAddress) {
+                event.port = ((InetSocketAddress) remoteAddress).getPort();
+            }
+        }
+        promise.addListener((ChannelFutureListener) f -> {
+            long connected = System.nanoTime();
+            if (event != null) {
+                event.success = f.isSuccess();
+                event.commit();
+            }
+            for (NettyClientListener listener : metrics.listeners) {
+                listener.onConnect(host, connected - start, f.isSuccess());
+            }
+            SslHandler sslHandler = f.isSuccess() ? ctx.pipeline().get(SslHandler.class) : null;
+            if (sslHandler != null) {
+                // the handshake starts when the connection becomes active
+                JfrEvents.TlsHandshakeEvent handshakeEvent = JfrEvents.tlsHandshakeEvent();
+                if (handshakeEvent != null) {
+                    handshakeEvent.begin();
+                }
+                sslHandler.handshakeFuture().addListener(h -> {
+                    long handshake = System.nanoTime() - connected;
+                    if (handshakeEvent != null) {
+                        handshakeEvent.host = host;
+                        handshakeEvent.success = h.isSuccess();
+                        if (h.isSuccess()) {
+                            SSLSession session = sslHandler.engine().getSession();
+                            handshakeEvent.protocol = session.getProtocol();
+                            handshakeEvent.cipherSuite = session.getCipherSuite();
+                        }
+                        handshakeEvent.commit();
+                    }
+                    for (NettyClientListener listener : metrics.listeners) {
+                        listener.onTlsHandshake(host, handshake, h.isSuccess());
+                    }
+                });
+            }
+        });
+        ctx.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!metrics.listeners.isEmpty()) {
+            long bytes;
+            if (msg instanceof ByteBuf) {
+                bytes = ((ByteBuf) msg).readableBytes();
+            } else if (msg instanceof FileRegion) {
+                bytes = ((FileRegion) msg).count() - ((FileRegion) msg).transferred();
+            } else {
+                bytes = 0;
+            }
+            if (bytes > 0) {
+                for (NettyClientListener listener : metrics.listeners) {
+                    listener.onBytesWritten(host, bytes);
+                }
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf && !metrics.listeners.isEmpty()) {
+            int bytes = ((ByteBuf) msg).readableBytes();
+            for (NettyClientListener listener : metrics.listeners) {
+                listener.onBytesRead(host, bytes);
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
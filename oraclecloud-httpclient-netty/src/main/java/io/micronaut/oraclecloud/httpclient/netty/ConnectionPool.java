@@ -0,0 +1,601 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of HTTP/1.1 keep-alive connections to the host of a {@link NettyHttpClient}. A connection is handed out for one
+ * request-response exchange at a time, and returns to the pool once the response body has been consumed or discarded.
+ * <p>
+ * Each pooled channel has the connection-level handlers (TLS, HTTP codec) and a {@link PooledConnection} as the last
+ * handler of the pipeline. The exchange-specific handlers are added before the {@link PooledConnection}, and must
+ * remove themselves when the exchange is done. The body handlers signal the end of the response by forwarding a
+ * {@link LastHttpContent} to the {@link PooledConnection}.
+ * <p>
+ * When HTTP/2 is enabled, the first connection offers {@code h2} via ALPN. If the server accepts, all requests are
+ * multiplexed as streams over that single connection. Each stream channel converts HTTP/2 frames to the same HTTP/1
+ * message objects, so the exchange handlers work the same way. If the server picks HTTP/1.1, that connection and all
+ * further connections are pooled as usual.
+ */
+final class ConnectionPool {
+    static final String CONNECTION_HANDLER_NAME = "oci-pooled-connection";
+
+    private final NettyHttpClient client;
+    private final int maxConnections;
+    private final long idleTimeoutNanos;
+    private final boolean http2;
+
+    private final Object monitor = new Object();
+    /**
+     * Idle connections, most recently used first.
+     */
+    private final Deque<Channel> idle = new ArrayDeque<>();
+    /**
+     * Acquire requests waiting for a free connection.
+     */
+    private final Queue<CompletableFuture<Channel>> waiting = new ArrayDeque<>();
+    /**
+     * Number of open or connecting channels.
+     */
+    private int open = 0;
+    private boolean closed = false;
+    /**
+     * The shared HTTP/2 connection. Completes with {@code null} if the server negotiated HTTP/1.1 instead.
+     */
+    private CompletableFuture<Channel> http2Connection;
+    private boolean http1Negotiated = false;
+
+    ConnectionPool(NettyHttpClient client, int maxConnections, long idleTimeoutNanos, boolean http2) {
+        this.client = client;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.http2 = http2;
+    }
+
+    /**
+     * Get a connection for a single exchange. The returned channel must be used for exactly one request, or returned
+     * with {@link #release(Channel, boolean)}.
+     *
+     * @return Future that completes with a healthy, active channel
+     */
+    CompletableFuture<Channel> acquire() {
+        if (http2) {
+            CompletableFuture<Channel> connection = http2Connection();
+            if (connection != null) {
+                return connection.thenCompose(parent -> parent == null ? acquireHttp1() : openStream(parent));
+            }
+        }
+        return acquireHttp1();
+    }
+
+    /**
+     * Open connections before the first request, so that the first requests don't pay for name resolution and the
+     * TCP and TLS handshakes. The connections are added to the idle pool, or, with HTTP/2, become the shared
+     * connection.
+     *
+     * @param connections Number of HTTP/1.1 connections to open, limited to the maximum number of connections
+     * @return Future that completes with the number of connections that were opened, once their handshakes are done.
+     * Connection failures are not reported, requests connect on demand instead.
+     */
+    CompletableFuture<Integer> preconnect(int connections) {
+        if (http2) {
+            CompletableFuture<Channel> connection = http2Connection();
+            if (connection != null) {
+                return connection.handle((parent, t) -> {
+                    if (t != null) {
+                        return CompletableFuture.completedFuture(0);
+                    } else if (parent != null) {
+                        // all requests share this connection
+                        return CompletableFuture.completedFuture(1);
+                    } else {
+                        // HTTP/1.1 was negotiated, and the connection was added to the pool
+                        return preconnectHttp1(connections - 1).thenApply(n -> n + 1);
+                    }
+                }).thenCompose(f -> f);
+            }
+        }
+        return preconnectHttp1(connections);
+    }
+
+    private CompletableFuture<Integer> preconnectHttp1(int connections) {
+        List<CompletableFuture<Boolean>> handshakes = new ArrayList<>();
+        for (int i = 0; i < Math.min(connections, maxConnections); i++) {
+            handshakes.add(acquireHttp1().thenCompose(channel -> {
+                CompletableFuture<Boolean> handshake = new CompletableFuture<>();
+                SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+                Future<?> handshakeFuture = sslHandler == null ? channel.newSucceededFuture() : sslHandler.handshakeFuture();
+                // listeners run on the event loop
+                handshakeFuture.addListener(f -> {
+                    release(channel, f.isSuccess());
+                    handshake.complete(f.isSuccess());
+                });
+                return handshake;
+            }).exceptionally(t -> false));
+        }
+        return CompletableFuture.allOf(handshakes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> (int) handshakes.stream().filter(CompletableFuture::join).count());
+    }
+
+    private CompletableFuture<Channel> acquireHttp1() {
+        CompletableFuture<Channel> future = new CompletableFuture<>();
+        while (true) {
+            Channel channel;
+            synchronized (monitor) {
+                if (closed) {
+                    future.completeExceptionally(new IllegalStateException("Client has been closed"));
+                    return future;
+                }
+                channel = idle.pollFirst();
+                if (channel == null) {
+                    if (open >= maxConnections) {
+                        waiting.add(future);
+                        return future;
+                    }
+                    open++;
+                }
+            }
+            if (channel == null) {
+                connect(future);
+                return future;
+            }
+            if (connection(channel).isHealthy()) {
+                future.complete(channel);
+                return future;
+            }
+            // stale, try the next one
+            channel.close();
+        }
+    }
+
+    /**
+     * Return a channel to the pool. Must be called on the event loop of the channel.
+     *
+     * @param channel  The channel that was acquired from this pool
+     * @param reusable {@code false} if the channel should be closed instead, e.g. because the exchange failed
+     */
+    void release(Channel channel, boolean reusable) {
+        if (!reusable || !channel.isActive() || channel instanceof Http2StreamChannel) {
+            channel.close();
+            return;
+        }
+        while (true) {
+            CompletableFuture<Channel> next;
+            synchronized (monitor) {
+                if (closed) {
+                    break;
+                }
+                next = waiting.poll();
+                if (next == null) {
+                    idle.addFirst(channel);
+                    connection(channel).scheduleEviction();
+                    return;
+                }
+            }
+            if (next.complete(channel)) {
+                return;
+            }
+            // the waiting request was cancelled, try the next one
+        }
+        channel.close();
+    }
+
+    /**
+     * Close all idle connections, and fail any waiting requests. Connections that are in use are closed when they
+     * are released.
+     */
+    void close() {
+        List<Channel> toClose;
+        List<CompletableFuture<Channel>> toFail;
+        synchronized (monitor) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            toFail = new ArrayList<>(waiting);
+            waiting.clear();
+            if (http2Connection != null) {
+                http2Connection.thenAccept(parent -> {
+                    if (parent != null) {
+                        parent.close();
+                    }
+                });
+            }
+        }
+        for (Channel channel : toClose) {
+            channel.close();
+        }
+        for (CompletableFuture<Channel> future : toFail) {
+            future.completeExceptionally(new IllegalStateException("Client has been closed"));
+        }
+    }
+
+    private void connect(CompletableFuture<Channel> future) {
+        connect(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                if (client.sslContext != null) {
+                    ch.pipeline().addLast(newSslHandler(ch));
+                }
+                initializeHttp1(ch.pipeline());
+            }
+        }).addListener((ChannelFutureListener) cf -> {
+            if (!cf.isSuccess()) {
+                future.completeExceptionally(cf.cause());
+            } else if (!future.complete(cf.channel())) {
+                // cancelled in the meantime
+                release(cf.channel(), true);
+            }
+        });
+    }
+
+    private ChannelFuture connect(ChannelInitializer<Channel> initializer) {
+        ChannelFuture connectFuture = client.bootstrap.clone()
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ConnectionMetricsHandler(client.metrics, client.host), initializer);
+                    }
+                })
+                .connect();
+        Channel channel = connectFuture.channel();
+        channel.closeFuture().addListener(f -> onClose(channel));
+        connectFuture.addListener((ChannelFutureListener) cf -> {
+            if (!cf.isSuccess()) {
+                cf.channel().close();
+            }
+        });
+        return connectFuture;
+    }
+
+    private SslHandler newSslHandler(Channel ch) {
+        // the peer host and port are the key for session resumption
+        SslHandler sslHandler = client.sslContext.newHandler(ch.alloc(), client.host, client.port);
+        // enable host verification
+        SSLEngine engine = sslHandler.engine();
+        SSLParameters params = engine.getSSLParameters();
+        params.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(params);
+        long handshakeStart = System.currentTimeMillis();
+        sslHandler.handshakeFuture().addListener(f -> {
+            if (f.isSuccess()) {
+                // a resumed session keeps the creation time of the original session
+                if (engine.getSession().getCreationTime() < handshakeStart) {
+                    client.metrics.tlsSessionsResumed.increment();
+                } else {
+                    client.metrics.tlsFullHandshakes.increment();
+                }
+            }
+        });
+        return sslHandler;
+    }
+
+    private void initializeHttp1(ChannelPipeline pipeline) {
+        pipeline.addLast(new HttpClientCodec())
+                .addLast(new ExchangeMetricsHandler(client.metrics, client.host));
+        addReadTimeout(pipeline);
+        pipeline.addLast(CONNECTION_HANDLER_NAME, new PooledConnection());
+    }
+
+    private void addReadTimeout(ChannelPipeline pipeline) {
+        if (client.readTimeoutNanos > 0) {
+            pipeline.addLast(new PendingReadTimeoutHandler(client.readTimeoutNanos));
+        }
+    }
+
+    /**
+     * Get the shared HTTP/2 connection, connecting if necessary.
+     *
+     * @return The connection future, or {@code null} if the server only supports HTTP/1.1
+     */
+    private CompletableFuture<Channel> http2Connection() {
+        CompletableFuture<Channel> connection;
+        synchronized (monitor) {
+            if (http1Negotiated || closed) {
+                return null;
+            }
+            connection = http2Connection;
+            if (connection != null && (!connection.isDone() || isUsable(connection))) {
+                return connection;
+            }
+            connection = new CompletableFuture<>();
+            http2Connection = connection;
+            open++;
+        }
+        CompletableFuture<Channel> future = connection;
+        connect(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline()
+                        .addLast(newSslHandler(ch))
+                        .addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                            @Override
+                            protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                                if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                                    ctx.pipeline().addLast(
+                                            Http2FrameCodecBuilder.forClient()
+                                                    .initialSettings(Http2Settings.defaultSettings().pushEnabled(false))
+                                                    .build(),
+                                            new Http2MultiplexHandler(DiscardingHandler.INSTANCE));
+                                    // complete outside the handshake event, otherwise the streams opened by
+                                    // waiting requests are not flushed
+                                    ctx.channel().eventLoop().execute(() -> future.complete(ctx.channel()));
+                                } else {
+                                    synchronized (monitor) {
+                                        http1Negotiated = true;
+                                    }
+                                    // use this connection for the pool instead
+                                    initializeHttp1(ctx.pipeline());
+                                    release(ctx.channel(), true);
+                                    future.complete(null);
+                                }
+                            }
+
+                            @Override
+                            protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) {
+                                future.completeExceptionally(cause);
+                                ctx.close();
+                            }
+                        });
+            }
+        }).addListener((ChannelFutureListener) cf -> {
+            if (cf.isSuccess()) {
+                cf.channel().closeFuture().addListener(f -> future.completeExceptionally(
+                        new IOException("Connection closed during protocol negotiation")));
+            } else {
+                future.completeExceptionally(cf.cause());
+            }
+        });
+        return future;
+    }
+
+    private static boolean isUsable(CompletableFuture<Channel> http2Connection) {
+        if (http2Connection.isCompletedExceptionally()) {
+            return false;
+        }
+        Channel parent = http2Connection.join();
+        return parent == null || (parent.isActive() && !parent.pipeline().get(Http2FrameCodec.class).connection().goAwayReceived());
+    }
+
+    private CompletableFuture<Channel> openStream(Channel parent) {
+        CompletableFuture<Channel> future = new CompletableFuture<>();
+        new Http2StreamChannelBootstrap(parent)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new Http2StreamFrameToHttpObjectCodec(false))
+                                .addLast(new ExchangeMetricsHandler(client.metrics, client.host))
+                                .addLast(StreamContentEncoder.INSTANCE);
+                        addReadTimeout(ch.pipeline());
+                        ch.pipeline().addLast(CONNECTION_HANDLER_NAME, new PooledConnection());
+                    }
+                })
+                .open()
+                .addListener((GenericFutureListener<Future<Http2StreamChannel>>) f -> {
+                    if (!f.isSuccess()) {
+                        future.completeExceptionally(f.cause());
+                    } else if (!future.complete(f.getNow())) {
+                        f.getNow().close();
+                    }
+                });
+        return future;
+    }
+
+    int openConnections() {
+        synchronized (monitor) {
+            return open;
+        }
+    }
+
+    int idleConnections() {
+        synchronized (monitor) {
+            return idle.size();
+        }
+    }
+
+    int pendingAcquisitions() {
+        synchronized (monitor) {
+            return waiting.size();
+        }
+    }
+
+    private void onClose(Channel channel) {
+        CompletableFuture<Channel> next;
+        synchronized (monitor) {
+            open--;
+            idle.remove(channel);
+            if (closed) {
+                return;
+            }
+            next = waiting.poll();
+            if (next == null) {
+                return;
+            }
+            open++;
+        }
+        // a slot became free, open a new connection for the next waiting request
+        connect(next);
+    }
+
+    private void evict(Channel channel) {
+        boolean removed;
+        synchronized (monitor) {
+            removed = idle.remove(channel);
+        }
+        if (removed) {
+            channel.close();
+        }
+    }
+
+    static PooledConnection connection(Channel channel) {
+        return (PooledConnection) channel.pipeline().get(CONNECTION_HANDLER_NAME);
+    }
+
+    /**
+     * {@link StreamWritingHandler} writes plain {@link ByteBuf}s, which the HTTP/1.1 codec accepts but the HTTP/2
+     * stream codec does not. This encoder wraps them in {@link HttpContent}.
+     */
+    @ChannelHandler.Sharable
+    static final class StreamContentEncoder extends MessageToMessageEncoder<ByteBuf> {
+        static final StreamContentEncoder INSTANCE = new StreamContentEncoder();
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+            out.add(new DefaultHttpContent(msg.retain()));
+        }
+    }
+
+    /**
+     * Last handler in the pipeline of a pooled channel. Tracks the state of the current exchange, and returns the
+     * channel to the pool once the response has been fully consumed.
+     */
+    final class PooledConnection extends ChannelDuplexHandler {
+        private ChannelHandlerContext ctx;
+        private boolean inExchange = false;
+        private boolean keepAlive;
+        private volatile boolean broken = false;
+        private ScheduledFuture<?> eviction;
+        private long idleSince;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        /**
+         * Health check before a connection is reused.
+         */
+        boolean isHealthy() {
+            return !broken && ctx.channel().isActive() && System.nanoTime() - idleSince < idleTimeoutNanos;
+        }
+
+        /**
+         * Called by the exchange when the response headers have been received.
+         *
+         * @param response The response headers
+         */
+        void onResponse(HttpResponse response) {
+            keepAlive &= HttpUtil.isKeepAlive(response);
+        }
+
+        /**
+         * Called by the exchange when the request was not sent completely, so the connection can't be reused.
+         */
+        void doNotReuse() {
+            keepAlive = false;
+        }
+
+        private void scheduleEviction() {
+            idleSince = System.nanoTime();
+            eviction = ctx.executor().schedule(() -> evict(ctx.channel()), idleTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof HttpRequest) {
+                if (eviction != null) {
+                    eviction.cancel(false);
+                    eviction = null;
+                }
+                inExchange = true;
+                keepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
+            }
+            super.write(ctx, msg, promise);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            boolean last = msg instanceof LastHttpContent;
+            // any other data that reaches this handler is left over from an exchange that stopped reading
+            ReferenceCountUtil.release(msg);
+            if (!inExchange) {
+                // unsolicited data on an idle connection
+                broken = true;
+                ctx.close();
+            } else if (last) {
+                inExchange = false;
+                if (onlyConnectionHandlersLeft()) {
+                    release(ctx.channel(), keepAlive);
+                } else {
+                    // let the exchange handlers finish removing themselves first
+                    ctx.executor().execute(() -> release(ctx.channel(), keepAlive && onlyConnectionHandlersLeft()));
+                }
+            }
+        }
+
+        private boolean onlyConnectionHandlersLeft() {
+            for (Map.Entry<String, ChannelHandler> entry : ctx.pipeline()) {
+                ChannelHandler handler = entry.getValue();
+                if (handler != this && !(handler instanceof SslHandler) && !(handler instanceof HttpClientCodec) &&
+                        !(handler instanceof ApplicationProtocolNegotiationHandler) &&
+                        !(handler instanceof PendingReadTimeoutHandler) &&
+                        !(handler instanceof ConnectionMetricsHandler) && !(handler instanceof ExchangeMetricsHandler)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            broken = true;
+            ctx.close();
+        }
+    }
+}
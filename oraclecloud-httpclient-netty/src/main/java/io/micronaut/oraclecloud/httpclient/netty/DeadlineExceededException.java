@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when a request does not complete before its {@link NettyRequestAttributes#DEADLINE}.
+ */
+public final class DeadlineExceededException extends TimeoutException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message The detail message
+     */
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
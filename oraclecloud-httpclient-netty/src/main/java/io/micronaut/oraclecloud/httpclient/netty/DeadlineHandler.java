@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange handler that enforces the {@link NettyRequestAttributes#DEADLINE} while the response is received. When the
+ * deadline passes, a {@link DeadlineExceededException} is passed to the following exchange handlers, and the channel is
+ * closed. The handler removes itself when the full response has been received.
+ */
+final class DeadlineHandler extends ChannelInboundHandlerAdapter {
+    private final long deadlineNanos;
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * @param deadlineNanos The deadline in {@link System#nanoTime()} terms
+     */
+    DeadlineHandler(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        timeout = ctx.executor().schedule(() -> {
+            ctx.fireExceptionCaught(new DeadlineExceededException("Request deadline exceeded"));
+            ctx.close();
+        }, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        timeout.cancel(false);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof LastHttpContent) {
+            ctx.pipeline().remove(this);
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
@@ -23,7 +23,8 @@ import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.LastHttpContent;
 
 /**
- * Handler that discards incoming data.
+ * Handler that discards incoming data. The end of the body is signalled to the next handler with an empty
+ * {@link LastHttpContent}.
  */
 @ChannelHandler.Sharable
 final class DiscardingHandler extends ChannelInboundHandlerAdapter {
@@ -40,6 +41,7 @@ final class DiscardingHandler extends ChannelInboundHandlerAdapter {
         } else if (msg instanceof HttpContent) {
             ((HttpContent) msg).release();
             if (msg instanceof LastHttpContent) {
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
                 ctx.pipeline().remove(this);
             }
         } else {
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Connection handler right after the HTTP codec that reports the request write, time-to-first-byte and response
+ * completion times of each exchange to the {@link NettyClientListener}s, and emits a
+ * {@link JfrEvents.ExchangeEvent}. All times are measured from the moment the request headers are written. Exchanges
+ * that start while no listener is registered and the event is disabled are not measured.
+ */
+final class ExchangeMetricsHandler extends ChannelDuplexHandler {
+    private static final String HEADER_REQUEST_ID = "opc-request-id";
+
+    private final NettyClientMetrics metrics;
+    private final String host;
+
+    /**
+     * Start of the current exchange, or {@code -1} if it is not measured.
+     */
+    private long start = -1;
+    private String method;
+    private int status;
+    private boolean informational;
+    /**
+     * JFR event of the current exchange, or {@code null} if the event is disabled.
+     */
+    private JfrEvents.ExchangeEvent event;
+
+    ExchangeMetricsHandler(NettyClientMetrics metrics, String host) {
+        this.metrics = metrics;
+        this.host = host;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            JfrEvents.ExchangeEvent event = JfrEvents.exchangeEvent();
+            if (event != null) {
+                event.begin();
+                event.host = host;
+                event.method = request.method().name();
+                event.pathTemplate = JfrEvents.pathTemplate(request.uri());
+                event.opcRequestId = request.headers().get(HEADER_REQUEST_ID);
+            }
+            this.event = event;
+            if (metrics.listeners.isEmpty() && this.event == null) {
+                start = -1;
+            } else {
+                start = System.nanoTime();
+                method = request.method().name();
+            }
+        }
+        if (event != null) {
+            event.bytesSent += contentBytes(msg);
+        }
+        if (msg instanceof LastHttpContent && start != -1) {
+            long exchangeStart = start;
+            String exchangeMethod = method;
+            JfrEvents.ExchangeEvent exchangeEvent = event;
+            promise = promise.unvoid();
+            promise.addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    long nanos = System.nanoTime() - exchangeStart;
+                    if (exchangeEvent != null) {
+                        exchangeEvent.requestSent = nanos;
+                    }
+                    for (NettyClientListener listener : metrics.listeners) {
+                        listener.onRequestWritten(host, exchangeMethod, nanos);
+                    }
+                }
+            });
+        }
+        ctx.write(msg, promise);
+    }
+
+    private static long contentBytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            // raw body chunks, written by StreamWritingHandler
+            return ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        } else if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (start != -1) {
+            if (msg instanceof HttpResponse) {
+                HttpResponse response = (HttpResponse) msg;
+                informational = response.status().codeClass() == HttpStatusClass.INFORMATIONAL;
+                if (!informational) {
+                    status = response.status().code();
+                    long nanos = System.nanoTime() - start;
+                    if (event != null) {
+                        event.status = status;
+                        event.responseHeaders = nanos;
+                        String requestId = response.headers().get(HEADER_REQUEST_ID);
+                        if (requestId != null) {
+                            event.opcRequestId = requestId;
+                        }
+                    }
+                    for (NettyClientListener listener : metrics.listeners) {
+                        listener.onResponseHeaders(host, method, status, nanos);
+                    }
+                }
+            }
+            if (msg instanceof HttpContent && !informational && event != null) {
+                event.bytesReceived += ((HttpContent) msg).content().readableBytes();
+            }
+            if (msg instanceof LastHttpContent && !informational) {
+                long nanos = System.nanoTime() - start;
+                start = -1;
+                if (event != null) {
+                    event.commit();
+                    event = null;
+                }
+                for (NettyClientListener listener : metrics.listeners) {
+                    listener.onResponseComplete(host, method, status, nanos);
+                }
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (event != null) {
+            // connection closed before the response was complete, record the exchange anyway
+            event.commit();
+            event = null;
+        }
+        ctx.fireChannelInactive();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange handler for a request with {@code Expect: 100-continue}. The request headers have been sent without the
+ * body. The body is sent when the server responds with {@code 100 Continue}, or when the server has not responded
+ * after a timeout (some servers ignore the expectation). If the final response arrives first, the body is never sent,
+ * and the connection is not reused.
+ * <p>
+ * Informational responses are not passed on. The handler removes itself when the final response arrives.
+ */
+final class ExpectContinueHandler extends ChannelInboundHandlerAdapter {
+    private final long timeoutNanos;
+    private final ConnectionPool.PooledConnection connection;
+    private final Runnable sendBody;
+    private final Runnable skipBody;
+
+    private ScheduledFuture<?> timeout;
+    private boolean decided = false;
+    /**
+     * Whether the content of an informational response is being skipped.
+     */
+    private boolean skipping = false;
+
+    /**
+     * @param timeoutNanos Time to wait for {@code 100 Continue}
+     * @param connection   The connection of the exchange
+     * @param sendBody     Sends the body. Called on the event loop
+     * @param skipBody     Releases the body if it is not sent. Called on the event loop
+     */
+    ExpectContinueHandler(long timeoutNanos, ConnectionPool.PooledConnection connection, Runnable sendBody, Runnable skipBody) {
+        this.timeoutNanos = timeoutNanos;
+        this.connection = connection;
+        this.sendBody = sendBody;
+        this.skipBody = skipBody;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        timeout = ctx.executor().schedule(() -> {
+            if (!decided) {
+                decided = true;
+                sendBody.run();
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        timeout.cancel(false);
+        if (!decided) {
+            // exchange failed before a response arrived
+            decided = true;
+            skipBody.run();
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpResponse) {
+            HttpResponseStatus status = ((HttpResponse) msg).status();
+            if (status.codeClass() == HttpStatusClass.INFORMATIONAL && status.code() != HttpResponseStatus.SWITCHING_PROTOCOLS.code()) {
+                if (status.code() == HttpResponseStatus.CONTINUE.code() && !decided) {
+                    decided = true;
+                    timeout.cancel(false);
+                    sendBody.run();
+                }
+                skipping = !(msg instanceof LastHttpContent);
+                ReferenceCountUtil.release(msg);
+                ctx.read();
+                return;
+            }
+            if (!decided) {
+                // early final response, e.g. an authorization or precondition failure
+                decided = true;
+                connection.doNotReuse();
+                skipBody.run();
+            }
+            ctx.pipeline().remove(this);
+            ctx.fireChannelRead(msg);
+        } else if (skipping && msg instanceof HttpContent) {
+            skipping = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            ctx.read();
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
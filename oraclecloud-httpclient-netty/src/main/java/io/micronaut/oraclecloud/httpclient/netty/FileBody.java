@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Request body backed by a file. On plaintext HTTP/1.1 connections, the file is sent with a {@link DefaultFileRegion},
+ * so the data does not pass through user space (sendfile). Otherwise (TLS, HTTP/2), it is read in chunks on the event
+ * loop. Either way, no thread hop to the blocking executor is necessary.
+ * <p>
+ * A {@link Path} or {@link File} is opened for each exchange and closed afterwards. A {@link FileChannel} supplied by
+ * the user is sent from its position at the time the body was set, and is not closed. Reads are positional, so the body
+ * can be sent multiple times (e.g. on retry).
+ */
+final class FileBody {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long position;
+    final long length;
+
+    private FileBody(Path path, FileChannel channel, long position, long length) {
+        this.path = path;
+        this.channel = channel;
+        this.position = position;
+        this.length = length;
+    }
+
+    static boolean isFileBody(Object body) {
+        return body instanceof Path || body instanceof File || body instanceof FileChannel;
+    }
+
+    static FileBody of(Object body) throws IOException {
+        if (body instanceof FileChannel) {
+            FileChannel channel = (FileChannel) body;
+            long position = channel.position();
+            return new FileBody(null, channel, position, channel.size() - position);
+        } else {
+            Path path = body instanceof File ? ((File) body).toPath() : (Path) body;
+            return new FileBody(path, null, 0, Files.size(path));
+        }
+    }
+
+    /**
+     * Write the body, followed by the {@link LastHttpContent}, to the given channel. The request headers must have been
+     * written already.
+     *
+     * @param ch The channel to write to
+     * @return Future that completes when the body has been written
+     */
+    ChannelFuture write(Channel ch) {
+        FileChannel file;
+        boolean ownFile = channel == null;
+        if (ownFile) {
+            try {
+                file = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                return ch.newFailedFuture(e);
+            }
+        } else {
+            file = channel;
+        }
+
+        if (ch.pipeline().get(SslHandler.class) == null && !(ch instanceof Http2StreamChannel)) {
+            ch.write(ownFile ? new DefaultFileRegion(file, position, length) : new DefaultFileRegion(file, position, length) {
+                @Override
+                protected void deallocate() {
+                    // don't close the user channel
+                }
+            }, ch.voidPromise());
+            return ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+
+        ChunkedNioFile input;
+        try {
+            input = new ChunkedNioFile(file, position, length, CHUNK_SIZE) {
+                @Override
+                public void close() throws Exception {
+                    if (ownFile) {
+                        super.close();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            if (ownFile) {
+                try {
+                    file.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            return ch.newFailedFuture(e);
+        }
+        ChunkedWriteHandler chunkedWriteHandler = new ChunkedWriteHandler();
+        ch.pipeline().addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, chunkedWriteHandler);
+        return ch.writeAndFlush(new HttpChunkedInput(input)).addListener((ChannelFutureListener) future -> {
+            if (ch.pipeline().context(chunkedWriteHandler) != null) {
+                ch.pipeline().remove(chunkedWriteHandler);
+            }
+        });
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpResponse;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hedged request: the request is sent, and if no response has arrived after the hedge delay, a copy is sent as well.
+ * The first successful response wins. The other attempt is cancelled, or its response is closed if it has already
+ * arrived. The result only fails if all attempts fail.
+ */
+final class HedgedExecution {
+    private final NettyHttpClient client;
+    private final NettyHttpRequest hedge;
+    private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+    // guarded by this
+    private final List<CompletableFuture<HttpResponse>> attempts = new ArrayList<>(2);
+    private int failed = 0;
+    private Throwable firstFailure;
+    /**
+     * Whether it has been decided whether the hedge is sent. Until then, a failure of the primary attempt fails the
+     * result right away.
+     */
+    private boolean hedgeDecided = false;
+
+    private ScheduledFuture<?> timer;
+
+    private HedgedExecution(NettyHttpClient client, NettyHttpRequest hedge) {
+        this.client = client;
+        this.hedge = hedge;
+    }
+
+    /**
+     * @param client     The client
+     * @param primary    The request to send immediately
+     * @param hedge      A copy of the request, made before the primary request was executed
+     * @param delayNanos The hedge delay
+     * @return The response of the first successful attempt
+     */
+    static CompletableFuture<HttpResponse> execute(NettyHttpClient client, NettyHttpRequest primary, NettyHttpRequest hedge, long delayNanos) {
+        HedgedExecution execution = new HedgedExecution(client, hedge);
+        execution.result.whenComplete((response, t) -> {
+            if (t != null) {
+                // cancelled by the user, or all attempts failed
+                execution.cancelAttempts(null);
+                execution.skipHedge();
+            }
+        });
+        execution.timer = client.transportResources.eventLoopGroup.schedule(execution::onDelay, delayNanos, TimeUnit.NANOSECONDS);
+        execution.start(primary, false);
+        return execution.result;
+    }
+
+    private void onDelay() {
+        synchronized (this) {
+            if (hedgeDecided) {
+                return;
+            }
+            hedgeDecided = true;
+        }
+        if (result.isDone() || !client.hedging.tryHedge()) {
+            hedge.discard();
+            failIfAllFailed();
+            return;
+        }
+        client.metrics.hedgedRequests.increment();
+        start(hedge, true);
+    }
+
+    /**
+     * Decide not to send the hedge, if that hasn't been decided yet.
+     */
+    private void skipHedge() {
+        synchronized (this) {
+            if (hedgeDecided) {
+                return;
+            }
+            hedgeDecided = true;
+        }
+        timer.cancel(false);
+        hedge.discard();
+    }
+
+    private void start(NettyHttpRequest request, boolean isHedge) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse> attempt = request.executeOnce().toCompletableFuture();
+        synchronized (this) {
+            attempts.add(attempt);
+        }
+        attempt.whenComplete((response, t) -> {
+            if (t == null) {
+                client.hedging.record(System.nanoTime() - start);
+                if (result.complete(response)) {
+                    if (isHedge) {
+                        client.metrics.hedgeWins.increment();
+                    }
+                    skipHedge();
+                    cancelAttempts(attempt);
+                } else {
+                    response.close();
+                }
+            } else {
+                synchronized (this) {
+                    failed++;
+                    if (firstFailure == null) {
+                        firstFailure = t;
+                    }
+                }
+                if (!isHedge) {
+                    // don't hedge a request that has already failed, leave retries to the caller
+                    skipHedge();
+                }
+                failIfAllFailed();
+            }
+        });
+    }
+
+    private void failIfAllFailed() {
+        Throwable failure;
+        synchronized (this) {
+            if (!hedgeDecided || failed < attempts.size()) {
+                return;
+            }
+            failure = firstFailure;
+        }
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private void cancelAttempts(CompletableFuture<HttpResponse> except) {
+        List<CompletableFuture<HttpResponse>> toCancel;
+        synchronized (this) {
+            toCancel = new ArrayList<>(attempts);
+        }
+        for (CompletableFuture<HttpResponse> attempt : toCancel) {
+            if (attempt != except) {
+                attempt.cancel(false);
+            }
+        }
+    }
+}
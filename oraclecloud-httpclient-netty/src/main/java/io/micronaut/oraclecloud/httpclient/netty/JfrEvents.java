@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the netty client. They are emitted on the event loop, by
+ * {@link ConnectionMetricsHandler} and {@link ExchangeMetricsHandler}. Events are only created when the event type is
+ * enabled in a running recording, and never on a runtime without the {@code jdk.jfr} module.
+ */
+final class JfrEvents {
+    private static final String PREFIX = "io.micronaut.oraclecloud.httpclient.";
+    private static final String CATEGORY = "OCI SDK";
+    private static final String SUBCATEGORY = "HTTP Client";
+
+    private static final boolean AVAILABLE = isJfrAvailable();
+
+    private JfrEvents() {
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return A new connect event, or {@code null} if it is disabled
+     */
+    static ConnectEvent connectEvent() {
+        return AVAILABLE && Types.CONNECT.isEnabled() ? new ConnectEvent() : null;
+    }
+
+    /**
+     * @return A new TLS handshake event, or {@code null} if it is disabled
+     */
+    static TlsHandshakeEvent tlsHandshakeEvent() {
+        return AVAILABLE && Types.TLS_HANDSHAKE.isEnabled() ? new TlsHandshakeEvent() : null;
+    }
+
+    /**
+     * @return A new exchange event, or {@code null} if it is disabled
+     */
+    static ExchangeEvent exchangeEvent() {
+        return AVAILABLE && Types.EXCHANGE.isEnabled() ? new ExchangeEvent() : null;
+    }
+
+    /**
+     * Path with the OCIDs replaced by a placeholder, so that events of the same operation can be grouped.
+     *
+     * @param uri The request URI, as sent on the wire
+     * @return The path template
+     */
+    static String pathTemplate(String uri) {
+        int start = 0;
+        int schemeEnd = uri.indexOf("://");
+        if (schemeEnd != -1) {
+            // absolute form, skip the authority
+            start = uri.indexOf('/', schemeEnd + 3);
+            if (start == -1) {
+                return "/";
+            }
+        }
+        int end = uri.indexOf('?', start);
+        if (end == -1) {
+            end = uri.length();
+        }
+        StringBuilder template = new StringBuilder(end - start);
+        int segmentStart = start;
+        while (segmentStart < end) {
+            int segmentEnd = uri.indexOf('/', segmentStart + 1);
+            if (segmentEnd == -1 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            if (uri.startsWith("/ocid1.", segmentStart)) {
+                template.append("/{ocid}");
+            } else {
+                template.append(uri, segmentStart, segmentEnd);
+            }
+            segmentStart = segmentEnd;
+        }
+        return template.toString();
+    }
+
+    @Name(PREFIX + "Connect")
+    @Label("OCI HTTP Connect")
+    @Description("TCP connection establishment, excluding name resolution")
+    @Category({CATEGORY, SUBCATEGORY})
+    @StackTrace(false)
+    static final class ConnectEvent extends Event {
+        @Label("Host")
+        String host;
+        @Label("Port")
+        int port;
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name(PREFIX + "TlsHandshake")
+    @Label("OCI HTTP TLS Handshake")
+    @Category({CATEGORY, SUBCATEGORY})
+    @StackTrace(false)
+    static final class TlsHandshakeEvent extends Event {
+        @Label("Host")
+        String host;
+        @Label("Success")
+        boolean success;
+        @Label("Protocol")
+        String protocol;
+        @Label("Cipher Suite")
+        String cipherSuite;
+    }
+
+    @Name(PREFIX + "Exchange")
+    @Label("OCI HTTP Exchange")
+    @Description("A single request/response exchange on a connection, from writing the request headers until the end of the response body")
+    @Category({CATEGORY, SUBCATEGORY})
+    @StackTrace(false)
+    static final class ExchangeEvent extends Event {
+        @Label("Host")
+        String host;
+        @Label("Method")
+        String method;
+        @Label("Path Template")
+        String pathTemplate;
+        @Label("Status")
+        int status;
+        @Label("OPC Request ID")
+        String opcRequestId;
+        @Label("Request Sent")
+        @Description("Time until the end of the request body was written")
+        @Timespan
+        long requestSent;
+        @Label("Response Headers")
+        @Description("Time until the response headers arrived")
+        @Timespan
+        long responseHeaders;
+        @Label("Bytes Sent")
+        @Description("Request body bytes")
+        @DataAmount
+        long bytesSent;
+        @Label("Bytes Received")
+        @Description("Response body bytes")
+        @DataAmount
+        long bytesReceived;
+    }
+
+    /**
+     * The event types, only loaded once {@link #AVAILABLE} has been checked. {@link EventType#isEnabled()} is a cheap
+     * check, so no event is allocated for a disabled type.
+     */
+    private static final class Types {
+        static final EventType CONNECT = EventType.getEventType(ConnectEvent.class);
+        static final EventType TLS_HANDSHAKE = EventType.getEventType(TlsHandshakeEvent.class);
+        static final EventType EXCHANGE = EventType.getEventType(ExchangeEvent.class);
+    }
+}
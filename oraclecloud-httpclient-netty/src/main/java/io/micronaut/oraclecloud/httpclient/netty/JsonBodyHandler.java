@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This channel handler feeds input data ({@link ByteBuf} and {@link HttpContent}) into a non-blocking JSON parser as it
+ * arrives, and releases it immediately. The parsed tokens are collected in a {@link TokenBuffer}, which completes
+ * {@link #future} as soon as the root JSON value is complete. Any remaining input is discarded. When
+ * {@link LastHttpContent} is received, the end of the body is signalled to the next handler with an empty
+ * {@link LastHttpContent}.
+ * <p>
+ * Data binding from the {@link TokenBuffer} happens later, on the thread that consumes the future, through
+ * {@link #asParser(TokenBuffer, ObjectCodec)}.
+ */
+final class JsonBodyHandler extends ChannelInboundHandlerAdapter {
+    final CompletableFuture<TokenBuffer> future = new CompletableFuture<>();
+
+    private final JsonParser parser;
+    private final TokenBuffer tokens;
+    private int depth = 0;
+    /**
+     * Whether parsing has finished, either because the root value is complete or because of a {@link #failure}.
+     */
+    private boolean parsed = false;
+    private Throwable failure;
+
+    JsonBodyHandler(ObjectMapper mapper) {
+        try {
+            parser = mapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create non-blocking JSON parser", e);
+        }
+        tokens = new TokenBuffer(parser)
+                .forceUseOfBigDecimal(mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS));
+    }
+
+    /**
+     * Create a parser over the collected tokens that reads like a parser over the JSON text.
+     *
+     * @param tokens The tokens collected by this handler
+     * @param codec  The codec for data binding
+     * @return The parser
+     */
+    static JsonParser asParser(TokenBuffer tokens, ObjectCodec codec) {
+        return new FloatAsDoubleParser(tokens.asParser(codec));
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (!parsed) {
+            future.cancel(false);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpContent) {
+            feed(((HttpContent) msg).content());
+            ((HttpContent) msg).release();
+
+            if (msg instanceof LastHttpContent) {
+                endOfInput();
+                // hand the connection back before completing, so that it can be reused by a follow-up request
+                ctx.pipeline().remove(this);
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+                complete();
+            } else {
+                if (parsed) {
+                    complete();
+                }
+                ctx.read();
+            }
+        } else if (msg instanceof ByteBuf) {
+            try {
+                feed((ByteBuf) msg);
+            } finally {
+                ((ByteBuf) msg).release();
+            }
+            if (parsed) {
+                complete();
+            }
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (!future.completeExceptionally(cause)) {
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+
+    /**
+     * Parse a complete body that is already available. Completes {@link #future}.
+     *
+     * @param body The body, released by this method
+     */
+    void parseAll(ByteBuf body) {
+        try {
+            feed(body);
+            endOfInput();
+        } finally {
+            body.release();
+        }
+        complete();
+    }
+
+    private void complete() {
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(tokens);
+        }
+    }
+
+    private void feed(ByteBuf data) {
+        if (parsed || !data.isReadable()) {
+            return;
+        }
+        byte[] array;
+        int offset;
+        if (data.hasArray()) {
+            array = data.array();
+            offset = data.arrayOffset() + data.readerIndex();
+        } else {
+            array = ByteBufUtil.getBytes(data);
+            offset = 0;
+        }
+        try {
+            // all input is consumed by drain(), so the array is not referenced after this call
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(array, offset, offset + data.readableBytes());
+            drain();
+        } catch (IOException e) {
+            failure = e;
+            parsed = true;
+        }
+    }
+
+    private void endOfInput() {
+        if (parsed) {
+            return;
+        }
+        parser.getNonBlockingInputFeeder().endOfInput();
+        try {
+            drain();
+        } catch (IOException e) {
+            failure = e;
+        }
+        // for an empty or truncated body, data binding produces the appropriate error
+        parsed = true;
+    }
+
+    private void drain() throws IOException {
+        while (!parsed) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.NOT_AVAILABLE) {
+                return;
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                copyFloat();
+            } else {
+                tokens.copyCurrentEvent(parser);
+            }
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            parsed = depth == 0;
+        }
+    }
+
+    /**
+     * The token buffer stores a parsed number, not the text. Store the exact value, so that a
+     * {@link java.math.BigDecimal} property sees the same value as when parsing directly. {@link FloatAsDoubleParser}
+     * reports it as a {@code double} to everything else.
+     */
+    private void copyFloat() throws IOException {
+        tokens.writeNumber(parser.getDecimalValue());
+    }
+
+    /**
+     * Reports the exact floating point values stored by {@link #copyFloat()} the way a parser over the JSON text does:
+     * as {@link NumberType#DOUBLE}, with the exact value only through {@link #getDecimalValue()}. Untyped targets
+     * ({@link Object}, {@link java.util.Map}, {@link com.fasterxml.jackson.databind.JsonNode}) therefore get a
+     * {@link Double}, unless {@link DeserializationFeature#USE_BIG_DECIMAL_FOR_FLOATS} is enabled.
+     */
+    private static final class FloatAsDoubleParser extends JsonParserDelegate {
+        FloatAsDoubleParser(JsonParser delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public NumberType getNumberType() throws IOException {
+            NumberType type = delegate.getNumberType();
+            return type == NumberType.BIG_DECIMAL ? NumberType.DOUBLE : type;
+        }
+
+        @Override
+        public Number getNumberValue() throws IOException {
+            if (delegate.getNumberType() == NumberType.BIG_DECIMAL) {
+                return delegate.getDoubleValue();
+            }
+            return delegate.getNumberValue();
+        }
+    }
+}
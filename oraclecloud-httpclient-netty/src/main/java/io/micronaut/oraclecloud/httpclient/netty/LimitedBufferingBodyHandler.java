@@ -23,16 +23,19 @@ import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.LastHttpContent;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handler that buffers some response bytes until a set limit. This way, when normal body reading fails, we can still
- * read a potentially short error message from this handler.
+ * read a potentially short error message from this handler. The handler removes itself at the end of the response,
+ * but the buffer stays available until {@link #release()} is called.
  */
 final class LimitedBufferingBodyHandler extends ChannelInboundHandlerAdapter {
     private final int maxBuffer;
     private CompositeByteBuf buffer;
     private boolean overflowed = false;
     private final CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+    private final AtomicBoolean released = new AtomicBoolean(false);
 
     LimitedBufferingBodyHandler(int maxBuffer) {
         this.maxBuffer = maxBuffer;
@@ -45,7 +48,8 @@ final class LimitedBufferingBodyHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
-        if (buffer != null) {
+        // once the future is complete, the buffer is released by release()
+        if (buffer != null && (!future.isDone() || future.isCompletedExceptionally())) {
             buffer.release();
             buffer = null;
         }
@@ -65,6 +69,10 @@ final class LimitedBufferingBodyHandler extends ChannelInboundHandlerAdapter {
                 future.complete(buffer);
             }
         }
+        if (msg instanceof LastHttpContent) {
+            future.complete(buffer);
+            ctx.pipeline().remove(this);
+        }
         ctx.fireChannelRead(msg);
     }
 
@@ -87,4 +95,13 @@ final class LimitedBufferingBodyHandler extends ChannelInboundHandlerAdapter {
     public boolean hasOverflowed() {
         return overflowed;
     }
+
+    /**
+     * Release the buffered data. May be called from any thread.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            future.thenAccept(ByteBuf::release);
+        }
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that records the number of queued and running tasks of a delegate executor in {@link NettyClientMetrics}.
+ * The lifecycle methods are forwarded to the delegate, but the client never calls them: the delegate is owned by the
+ * {@link NettyTransportResources} or by the user.
+ */
+final class MeteredExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final NettyClientMetrics metrics;
+
+    MeteredExecutorService(ExecutorService delegate, NettyClientMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        metrics.blockingIoQueued.increment();
+        try {
+            delegate.execute(() -> {
+                metrics.blockingIoQueued.decrement();
+                metrics.blockingIoActive.increment();
+                try {
+                    command.run();
+                } finally {
+                    metrics.blockingIoActive.decrement();
+                }
+            });
+        } catch (RuntimeException e) {
+            metrics.blockingIoQueued.decrement();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+
+/**
+ * Resolver group that counts the name resolutions of another group in {@link NettyClientMetrics}, and reports their
+ * times to the {@link NettyClientListener}s.
+ */
+final class MetricsAddressResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+    private final AddressResolverGroup<InetSocketAddress> delegate;
+    private final boolean async;
+    private final NettyClientMetrics metrics;
+
+    /**
+     * @param delegate The group to observe
+     * @param async    Whether the delegate resolves asynchronously. Only then, a resolution that completes immediately
+     *                 is a cache hit
+     * @param metrics  The metrics to record into
+     */
+    MetricsAddressResolverGroup(AddressResolverGroup<InetSocketAddress> delegate, boolean async, NettyClientMetrics metrics) {
+        this.delegate = delegate;
+        this.async = async;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+        return new MetricsAddressResolver(delegate.getResolver(executor));
+    }
+
+    private final class MetricsAddressResolver implements AddressResolver<InetSocketAddress> {
+        private final AddressResolver<InetSocketAddress> delegate;
+
+        MetricsAddressResolver(AddressResolver<InetSocketAddress> delegate) {
+            this.delegate = delegate;
+        }
+
+        private <T> Future<T> observe(SocketAddress address, long start, Future<T> future) {
+            metrics.dnsResolutions.increment();
+            if (async && future.isDone()) {
+                metrics.dnsCacheHits.increment();
+            }
+            String host = address instanceof InetSocketAddress ? ((InetSocketAddress) address).getHostString() : null;
+            future.addListener(f -> {
+                if (!f.isSuccess()) {
+                    metrics.dnsFailures.increment();
+                }
+                if (host != null) {
+                    long nanos = System.nanoTime() - start;
+                    for (NettyClientListener listener : metrics.listeners) {
+                        listener.onDnsResolution(host, nanos, f.isSuccess());
+                    }
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public boolean isSupported(SocketAddress address) {
+            return delegate.isSupported(address);
+        }
+
+        @Override
+        public boolean isResolved(SocketAddress address) {
+            return delegate.isResolved(address);
+        }
+
+        @Override
+        public Future<InetSocketAddress> resolve(SocketAddress address) {
+            long start = System.nanoTime();
+            return observe(address, start, delegate.resolve(address));
+        }
+
+        @Override
+        public Future<InetSocketAddress> resolve(SocketAddress address, Promise<InetSocketAddress> promise) {
+            long start = System.nanoTime();
+            return observe(address, start, delegate.resolve(address, promise));
+        }
+
+        @Override
+        public Future<List<InetSocketAddress>> resolveAll(SocketAddress address) {
+            long start = System.nanoTime();
+            return observe(address, start, delegate.resolveAll(address));
+        }
+
+        @Override
+        public Future<List<InetSocketAddress>> resolveAll(SocketAddress address, Promise<List<InetSocketAddress>> promise) {
+            long start = System.nanoTime();
+            return observe(address, start, delegate.resolveAll(address, promise));
+        }
+
+        @Override
+        public void close() {
+            // the delegate resolver is owned by the delegate group
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+/**
+ * Receives connection and exchange events of the clients that record into a {@link NettyClientMetrics} instance, see
+ * {@link NettyClientMetrics#addListener(NettyClientListener)}. The methods are called on the event loop and must not
+ * block. Durations are in nanoseconds.
+ */
+public interface NettyClientListener {
+    /**
+     * Name resolution of the server host has finished.
+     *
+     * @param host    The server host
+     * @param nanos   Resolution time
+     * @param success Whether the host could be resolved
+     */
+    default void onDnsResolution(String host, long nanos, boolean success) {
+    }
+
+    /**
+     * A TCP connection attempt has finished.
+     *
+     * @param host    The server host
+     * @param nanos   Connect time, excluding name resolution
+     * @param success Whether the connection was established
+     */
+    default void onConnect(String host, long nanos, boolean success) {
+    }
+
+    /**
+     * A TLS handshake has finished.
+     *
+     * @param host    The server host
+     * @param nanos   Handshake time
+     * @param success Whether the handshake succeeded
+     */
+    default void onTlsHandshake(String host, long nanos, boolean success) {
+    }
+
+    /**
+     * The full request, including the body, has been written to the connection.
+     *
+     * @param host   The server host
+     * @param method The request method
+     * @param nanos  Time since the request headers were written
+     */
+    default void onRequestWritten(String host, String method, long nanos) {
+    }
+
+    /**
+     * The response headers have arrived (time to first byte).
+     *
+     * @param host   The server host
+     * @param method The request method
+     * @param status The response status
+     * @param nanos  Time since the request headers were written
+     */
+    default void onResponseHeaders(String host, String method, int status, long nanos) {
+    }
+
+    /**
+     * The response body has been received completely.
+     *
+     * @param host   The server host
+     * @param method The request method
+     * @param status The response status
+     * @param nanos  Time since the request headers were written
+     */
+    default void onResponseComplete(String host, String method, int status, long nanos) {
+    }
+
+    /**
+     * Bytes have been written to a connection, including protocol overhead and TLS framing.
+     *
+     * @param host  The server host
+     * @param bytes Number of bytes
+     */
+    default void onBytesWritten(String host, long bytes) {
+    }
+
+    /**
+     * Bytes have been read from a connection, including protocol overhead and TLS framing.
+     *
+     * @param host  The server host
+     * @param bytes Number of bytes
+     */
+    default void onBytesRead(String host, long bytes) {
+    }
+}
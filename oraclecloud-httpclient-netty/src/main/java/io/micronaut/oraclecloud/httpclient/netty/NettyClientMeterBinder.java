@@ -0,0 +1,329 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer binder for the clients that record into a {@link NettyClientMetrics} instance. Micrometer is an optional
+ * dependency of this module, the binder is only usable if it is on the classpath.
+ * <p>
+ * Timers, tagged by {@code host} (and {@code method} and {@code status} for exchanges):
+ * <ul>
+ *     <li>{@code oci.netty.client.dns}: name resolution</li>
+ *     <li>{@code oci.netty.client.connect}: TCP connect</li>
+ *     <li>{@code oci.netty.client.tls.handshake}: TLS handshake</li>
+ *     <li>{@code oci.netty.client.request.write}: request headers until the end of the request body is written</li>
+ *     <li>{@code oci.netty.client.response.first.byte}: request headers until the response headers arrive</li>
+ *     <li>{@code oci.netty.client.response.complete}: request headers until the end of the response body</li>
+ * </ul>
+ * Connection setup timers also carry an {@code outcome} tag. Additionally, the binder registers byte counters, the
+ * pool occupancy and the counters of {@link NettyClientMetrics}, and the memory of the netty buffer allocator.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * NettyClientMetrics metrics = new NettyClientMetrics();
+ * new NettyClientMeterBinder(metrics).bindTo(registry);
+ * HttpProvider provider = new NettyHttpProvider();
+ * HttpClient client = provider.newBuilder()
+ *     .property(NettyClientProperties.METRICS, metrics)
+ *     ...
+ * }</pre>
+ * To bind to several registries, bind to a composite registry.
+ */
+public final class NettyClientMeterBinder implements MeterBinder, NettyClientListener {
+    private static final String PREFIX = "oci.netty.client.";
+    /**
+     * Status of the {@code request.write} timer, which has no status tag.
+     */
+    private static final int NO_STATUS = -1;
+
+    private final NettyClientMetrics metrics;
+    private final ByteBufAllocator allocator;
+    private final Tags tags;
+    private volatile MeterRegistry registry;
+
+    private final SetupTimers dnsTimers = new SetupTimers("dns");
+    private final SetupTimers connectTimers = new SetupTimers("connect");
+    private final SetupTimers tlsHandshakeTimers = new SetupTimers("tls.handshake");
+    private final ExchangeTimers requestWriteTimers = new ExchangeTimers("request.write");
+    private final ExchangeTimers responseFirstByteTimers = new ExchangeTimers("response.first.byte");
+    private final ExchangeTimers responseCompleteTimers = new ExchangeTimers("response.complete");
+    private final ByteCounters bytesSent = new ByteCounters("bytes.sent");
+    private final ByteCounters bytesReceived = new ByteCounters("bytes.received");
+
+    /**
+     * Create a binder for the given metrics, and the default netty allocator.
+     *
+     * @param metrics The metrics to bind
+     */
+    public NettyClientMeterBinder(NettyClientMetrics metrics) {
+        this(metrics, ByteBufAllocator.DEFAULT, Tags.empty());
+    }
+
+    /**
+     * Create a binder.
+     *
+     * @param metrics   The metrics to bind
+     * @param allocator The allocator to report the memory of, usually {@link ByteBufAllocator#DEFAULT}
+     * @param tags      Tags to add to all meters
+     */
+    public NettyClientMeterBinder(NettyClientMetrics metrics, ByteBufAllocator allocator, Iterable<Tag> tags) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.allocator = Objects.requireNonNull(allocator, "allocator");
+        this.tags = Tags.of(tags);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (this.registry != null) {
+            throw new IllegalStateException("Already bound to a registry");
+        }
+        this.registry = registry;
+
+        gauge(registry, "pool.connections", NettyClientMetrics::getOpenConnections, Tags.of("state", "open"));
+        gauge(registry, "pool.connections", NettyClientMetrics::getIdleConnections, Tags.of("state", "idle"));
+        gauge(registry, "pool.pending", NettyClientMetrics::getPendingConnectionAcquisitions, Tags.empty());
+        gauge(registry, "blocking.io.queue", NettyClientMetrics::getBlockingIoQueueDepth, Tags.empty());
+        gauge(registry, "blocking.io.active", NettyClientMetrics::getBlockingIoActiveThreads, Tags.empty());
+        gauge(registry, "concurrency.limit", NettyClientMetrics::getConcurrencyLimit, Tags.empty());
+        gauge(registry, "concurrency.queue", NettyClientMetrics::getConcurrencyQueueDepth, Tags.empty());
+        counter(registry, "concurrency.rejected", NettyClientMetrics::getConcurrencyRejections, Tags.empty());
+        counter(registry, "tls.sessions", NettyClientMetrics::getTlsSessionsResumed, Tags.of("handshake", "resumed"));
+        counter(registry, "tls.sessions", NettyClientMetrics::getTlsFullHandshakes, Tags.of("handshake", "full"));
+        counter(registry, "requests.hedged", NettyClientMetrics::getHedgedRequests, Tags.empty());
+        counter(registry, "requests.hedge.wins", NettyClientMetrics::getHedgeWins, Tags.empty());
+        counter(registry, "requests.coalesced", NettyClientMetrics::getCoalescedRequests, Tags.empty());
+        counter(registry, "responses.throttled", NettyClientMetrics::getThrottledResponses, Tags.empty());
+        counter(registry, "cache.hits", NettyClientMetrics::getResponseCacheHits, Tags.empty());
+        counter(registry, "preconnect.connections", NettyClientMetrics::getPreconnectedConnections, Tags.empty());
+        counter(registry, "dns.resolutions", NettyClientMetrics::getDnsResolutions, Tags.empty());
+        counter(registry, "dns.cache.hits", NettyClientMetrics::getDnsCacheHits, Tags.empty());
+        counter(registry, "dns.failures", NettyClientMetrics::getDnsFailures, Tags.empty());
+        counter(registry, "requests.retried", NettyClientMetrics::getRetries, Tags.empty());
+        counter(registry, "requests.retries.rejected", NettyClientMetrics::getRetriesRejected, Tags.empty());
+
+        if (allocator instanceof ByteBufAllocatorMetricProvider) {
+            ByteBufAllocatorMetric allocatorMetric = ((ByteBufAllocatorMetricProvider) allocator).metric();
+            allocatorGauge(registry, "allocator.memory.used", allocatorMetric,
+                    ByteBufAllocatorMetric::usedDirectMemory, "direct");
+            allocatorGauge(registry, "allocator.memory.used", allocatorMetric,
+                    ByteBufAllocatorMetric::usedHeapMemory, "heap");
+            if (allocatorMetric instanceof PooledByteBufAllocatorMetric) {
+                PooledByteBufAllocatorMetric pooled = (PooledByteBufAllocatorMetric) allocatorMetric;
+                allocatorGauge(registry, "allocator.arena.active", pooled,
+                        m -> activeBytes(m.directArenas()), "direct");
+                allocatorGauge(registry, "allocator.arena.active", pooled, m -> activeBytes(m.heapArenas()), "heap");
+            }
+        }
+
+        metrics.addListener(this);
+    }
+
+    private void gauge(MeterRegistry registry, String name, ToDoubleFunction<NettyClientMetrics> f, Tags extraTags) {
+        Gauge.builder(PREFIX + name, metrics, f)
+                .tags(tags.and(extraTags))
+                .strongReference(true)
+                .register(registry);
+    }
+
+    private void counter(MeterRegistry registry, String name, ToDoubleFunction<NettyClientMetrics> f, Tags extraTags) {
+        FunctionCounter.builder(PREFIX + name, metrics, f)
+                .tags(tags.and(extraTags))
+                .register(registry);
+    }
+
+    private <M> void allocatorGauge(MeterRegistry registry, String name, M metric, ToDoubleFunction<M> f, String type) {
+        Gauge.builder(PREFIX + name, metric, f)
+                .tags(tags.and("type", type))
+                .baseUnit(BaseUnits.BYTES)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    private static long activeBytes(List<PoolArenaMetric> arenas) {
+        long sum = 0;
+        for (PoolArenaMetric arena : arenas) {
+            sum += arena.numActiveBytes();
+        }
+        return sum;
+    }
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "failure";
+    }
+
+    @Override
+    public void onDnsResolution(String host, long nanos, boolean success) {
+        dnsTimers.record(host, success, nanos);
+    }
+
+    @Override
+    public void onConnect(String host, long nanos, boolean success) {
+        connectTimers.record(host, success, nanos);
+    }
+
+    @Override
+    public void onTlsHandshake(String host, long nanos, boolean success) {
+        tlsHandshakeTimers.record(host, success, nanos);
+    }
+
+    @Override
+    public void onRequestWritten(String host, String method, long nanos) {
+        requestWriteTimers.record(host, method, NO_STATUS, nanos);
+    }
+
+    @Override
+    public void onResponseHeaders(String host, String method, int status, long nanos) {
+        responseFirstByteTimers.record(host, method, status, nanos);
+    }
+
+    @Override
+    public void onResponseComplete(String host, String method, int status, long nanos) {
+        responseCompleteTimers.record(host, method, status, nanos);
+    }
+
+    @Override
+    public void onBytesWritten(String host, long bytes) {
+        bytesSent.increment(host, bytes);
+    }
+
+    @Override
+    public void onBytesRead(String host, long bytes) {
+        bytesReceived.increment(host, bytes);
+    }
+
+    /**
+     * Connection setup timers of one name, by host and outcome. The listener methods run on the event loop for
+     * every event, so the meters are looked up in a map instead of going through the registry each time.
+     */
+    private final class SetupTimers {
+        private final String name;
+        private final Map<String, Timer> success = new ConcurrentHashMap<>();
+        private final Map<String, Timer> failure = new ConcurrentHashMap<>();
+
+        SetupTimers(String name) {
+            this.name = name;
+        }
+
+        void record(String host, boolean success, long nanos) {
+            Map<String, Timer> timers = success ? this.success : this.failure;
+            Timer timer = timers.get(host);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(host, h -> Timer.builder(PREFIX + name)
+                        .tags(tags.and("host", h, "outcome", outcome(success)))
+                        .register(registry));
+            }
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Exchange timers of one name, by host, method and status.
+     */
+    private final class ExchangeTimers {
+        private final String name;
+        private final Map<ExchangeKey, Timer> timers = new ConcurrentHashMap<>();
+
+        ExchangeTimers(String name) {
+            this.name = name;
+        }
+
+        void record(String host, String method, int status, long nanos) {
+            ExchangeKey key = new ExchangeKey(host, method, status);
+            Timer timer = timers.get(key);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(key, k -> {
+                    Tags timerTags = tags.and("host", k.host, "method", k.method);
+                    if (k.status != NO_STATUS) {
+                        timerTags = timerTags.and("status", Integer.toString(k.status));
+                    }
+                    return Timer.builder(PREFIX + name).tags(timerTags).register(registry);
+                });
+            }
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class ExchangeKey {
+        final String host;
+        final String method;
+        final int status;
+
+        ExchangeKey(String host, String method, int status) {
+            this.host = host;
+            this.method = method;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExchangeKey)) {
+                return false;
+            }
+            ExchangeKey other = (ExchangeKey) o;
+            return status == other.status && host.equals(other.host) && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return (host.hashCode() * 31 + method.hashCode()) * 31 + status;
+        }
+    }
+
+    /**
+     * Byte counters of one name, by host.
+     */
+    private final class ByteCounters {
+        private final String name;
+        private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+        ByteCounters(String name) {
+            this.name = name;
+        }
+
+        void increment(String host, long bytes) {
+            Counter counter = counters.get(host);
+            if (counter == null) {
+                counter = counters.computeIfAbsent(host, h -> Counter.builder(PREFIX + name)
+                        .tags(tags.and("host", h))
+                        .baseUnit(BaseUnits.BYTES)
+                        .register(registry));
+            }
+            counter.increment(bytes);
+        }
+    }
+}
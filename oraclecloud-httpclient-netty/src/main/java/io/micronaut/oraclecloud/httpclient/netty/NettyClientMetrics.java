@@ -0,0 +1,281 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters recorded by the netty clients. An instance can be passed to any number of clients using
+ * {@link NettyClientProperties#METRICS}, and then accumulates the values of all of them.
+ */
+public final class NettyClientMetrics {
+    final LongAdder tlsSessionsResumed = new LongAdder();
+    final LongAdder tlsFullHandshakes = new LongAdder();
+    final LongAdder blockingIoQueued = new LongAdder();
+    final LongAdder blockingIoActive = new LongAdder();
+    final LongAdder hedgedRequests = new LongAdder();
+    final LongAdder hedgeWins = new LongAdder();
+    final LongAdder concurrencyLimit = new LongAdder();
+    final LongAdder concurrencyQueueDepth = new LongAdder();
+    final LongAdder concurrencyRejections = new LongAdder();
+    final LongAdder throttledResponses = new LongAdder();
+    final LongAdder coalescedRequests = new LongAdder();
+    final LongAdder responseCacheHits = new LongAdder();
+    final LongAdder preconnectedConnections = new LongAdder();
+    final LongAdder preconnectNanos = new LongAdder();
+    final LongAdder dnsResolutions = new LongAdder();
+    final LongAdder dnsCacheHits = new LongAdder();
+    final LongAdder dnsFailures = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder retriesRejected = new LongAdder();
+    final List<NettyClientListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Connection pools of the open clients, for the pool occupancy.
+     */
+    final Set<ConnectionPool> pools = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Add a listener for connection and exchange events of the clients that record into this instance.
+     *
+     * @param listener The listener
+     */
+    public void addListener(NettyClientListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /**
+     * Remove a listener added with {@link #addListener(NettyClientListener)}.
+     *
+     * @param listener The listener
+     */
+    public void removeListener(NettyClientListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Number of TLS handshakes that resumed a previous session (cache or ticket hit).
+     *
+     * @return The number of resumed handshakes
+     */
+    public long getTlsSessionsResumed() {
+        return tlsSessionsResumed.sum();
+    }
+
+    /**
+     * Number of full TLS handshakes, i.e. handshakes that could not resume a previous session (cache miss).
+     *
+     * @return The number of full handshakes
+     */
+    public long getTlsFullHandshakes() {
+        return tlsFullHandshakes.sum();
+    }
+
+    /**
+     * Number of blocking body IO tasks (streaming uploads, request buffering) that have been submitted to the blocking
+     * executor but have not started yet.
+     *
+     * @return The current queue depth
+     */
+    public long getBlockingIoQueueDepth() {
+        return blockingIoQueued.sum();
+    }
+
+    /**
+     * Number of blocking body IO tasks that are currently running, i.e. the number of busy blocking executor threads.
+     *
+     * @return The current number of active threads
+     */
+    public long getBlockingIoActiveThreads() {
+        return blockingIoActive.sum();
+    }
+
+    /**
+     * Number of hedge requests sent, see {@link NettyClientProperties#HEDGE_PERCENTILE}.
+     *
+     * @return The number of hedges
+     */
+    public long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+
+    /**
+     * Number of hedge requests whose response arrived before the response of the original request.
+     *
+     * @return The number of hedges that won
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Current adaptive concurrency limit, see {@link NettyClientProperties#ADAPTIVE_CONCURRENCY}. When the instance is
+     * shared, this is the sum of the limits of all open clients.
+     *
+     * @return The current limit
+     */
+    public long getConcurrencyLimit() {
+        return concurrencyLimit.sum();
+    }
+
+    /**
+     * Number of requests waiting for the adaptive concurrency limit.
+     *
+     * @return The current queue depth
+     */
+    public long getConcurrencyQueueDepth() {
+        return concurrencyQueueDepth.sum();
+    }
+
+    /**
+     * Number of requests that were rejected because the queue of the adaptive concurrency limit was full, see
+     * {@link NettyClientProperties#ADAPTIVE_CONCURRENCY_MAX_QUEUE}.
+     *
+     * @return The number of rejected requests
+     */
+    public long getConcurrencyRejections() {
+        return concurrencyRejections.sum();
+    }
+
+    /**
+     * Number of responses with status 429 (Too Many Requests) or 503 (Service Unavailable), i.e. requests that the
+     * server rejected because of load.
+     *
+     * @return The number of rejected requests
+     */
+    public long getThrottledResponses() {
+        return throttledResponses.sum();
+    }
+
+    /**
+     * Number of requests that were not sent because they could share the response of an identical request already in
+     * flight, see {@link NettyClientProperties#COALESCE_REQUESTS}.
+     *
+     * @return The number of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * Number of responses served from the response cache after the server confirmed them with {@code 304 Not
+     * Modified}, see {@link NettyClientProperties#RESPONSE_CACHE_MAX_BYTES}.
+     *
+     * @return The number of cache hits
+     */
+    public long getResponseCacheHits() {
+        return responseCacheHits.sum();
+    }
+
+    /**
+     * Number of connections opened ahead of the first request, see {@link NettyClientProperties#PRECONNECT}.
+     *
+     * @return The number of preconnected connections
+     */
+    public long getPreconnectedConnections() {
+        return preconnectedConnections.sum();
+    }
+
+    /**
+     * Time it took until the connections of {@link NettyClientProperties#PRECONNECT} were ready, summed over all
+     * clients.
+     *
+     * @return The preconnect time in nanoseconds
+     */
+    public long getPreconnectTimeNanos() {
+        return preconnectNanos.sum();
+    }
+
+    /**
+     * Number of host name resolutions for new connections.
+     *
+     * @return The number of resolutions
+     */
+    public long getDnsResolutions() {
+        return dnsResolutions.sum();
+    }
+
+    /**
+     * Number of host name resolutions that were answered without a DNS query, from the cache of the asynchronous
+     * resolver (see {@link NettyClientProperties#ASYNC_DNS}) or the hosts file. Always {@code 0} for the blocking JDK
+     * resolver.
+     *
+     * @return The number of cache hits
+     */
+    public long getDnsCacheHits() {
+        return dnsCacheHits.sum();
+    }
+
+    /**
+     * Number of failed host name resolutions, including cached failures.
+     *
+     * @return The number of failures
+     */
+    public long getDnsFailures() {
+        return dnsFailures.sum();
+    }
+
+    /**
+     * Number of retries scheduled by {@link NettyClientProperties#RETRY_MAX_ATTEMPTS}.
+     *
+     * @return The number of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Number of retryable failures that were not retried because the retry budget was exhausted, see
+     * {@link NettyClientProperties#RETRY_BUDGET_RATIO}.
+     *
+     * @return The number of rejected retries
+     */
+    public long getRetriesRejected() {
+        return retriesRejected.sum();
+    }
+
+    /**
+     * Number of open connections, whether in use or idle. An HTTP/2 connection counts once, regardless of the number
+     * of streams.
+     *
+     * @return The number of open connections
+     */
+    public long getOpenConnections() {
+        return pools.stream().mapToLong(ConnectionPool::openConnections).sum();
+    }
+
+    /**
+     * Number of open HTTP/1.1 connections that are idle in the pool.
+     *
+     * @return The number of idle connections
+     */
+    public long getIdleConnections() {
+        return pools.stream().mapToLong(ConnectionPool::idleConnections).sum();
+    }
+
+    /**
+     * Number of requests waiting for a connection, because the connection limit has been reached.
+     *
+     * @return The number of waiting requests
+     */
+    public long getPendingConnectionAcquisitions() {
+        return pools.stream().mapToLong(ConnectionPool::pendingAcquisitions).sum();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.ClientProperty;
+import com.oracle.bmc.http.client.StandardClientProperties;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Client properties specific to the netty {@link NettyHttpProvider}, in addition to the
+ * {@link StandardClientProperties}.
+ * <p>
+ * The netty client enforces {@link StandardClientProperties#READ_TIMEOUT}, which defaults to 30 seconds: if no data
+ * arrives for that long while a response is pending, the request fails with a
+ * {@link java.net.SocketTimeoutException}. Set it to a longer duration for operations that take a long time to
+ * respond.
+ */
+public final class NettyClientProperties {
+    /**
+     * Maximum number of connections that are open to the client host at the same time. Further requests wait until a
+     * connection is returned to the pool. Defaults to 50.
+     */
+    public static final ClientProperty<Integer> MAX_CONNECTIONS = ClientProperty.create("netty.maxConnections");
+    /**
+     * Time after which an unused keep-alive connection is closed. Defaults to 30 seconds.
+     */
+    public static final ClientProperty<Duration> CONNECTION_IDLE_TIMEOUT = ClientProperty.create("netty.connectionIdleTimeout");
+    /**
+     * Offer HTTP/2 to https servers using ALPN. If the server accepts, requests are multiplexed over a single
+     * connection. Otherwise, the client falls back to HTTP/1.1. Defaults to {@code false}.
+     */
+    public static final ClientProperty<Boolean> HTTP2 = ClientProperty.create("netty.http2");
+    /**
+     * Event loop group, allocator and blocking executor to use for the client. The client does not close these
+     * resources. If not set, the client uses a default instance that is shared with other clients, unless
+     * {@link StandardClientProperties#ASYNC_POOL_SIZE} is set, in which case the client creates its own resources.
+     */
+    public static final ClientProperty<NettyTransportResources> TRANSPORT_RESOURCES = ClientProperty.create("netty.transportResources");
+    /**
+     * Socket transport to use. Ignored if {@link #TRANSPORT_RESOURCES} is set, the transport of those resources is
+     * used instead. Defaults to {@link NettyTransport#bestAvailable()}.
+     */
+    public static final ClientProperty<NettyTransport> TRANSPORT = ClientProperty.create("netty.transport");
+    /**
+     * Maximum number of TLS sessions kept for resumption. When a connection is reopened, a cached session (or, with
+     * TLS 1.3, a session ticket) lets the client skip the full handshake. Defaults to the JDK default. This also
+     * applies to a user-supplied {@link StandardClientProperties#SSL_CONTEXT}.
+     */
+    public static final ClientProperty<Integer> TLS_SESSION_CACHE_SIZE = ClientProperty.create("netty.tlsSessionCacheSize");
+    /**
+     * Time after which a cached TLS session can no longer be resumed. Defaults to the JDK default. This also applies
+     * to a user-supplied {@link StandardClientProperties#SSL_CONTEXT}.
+     */
+    public static final ClientProperty<Duration> TLS_SESSION_TIMEOUT = ClientProperty.create("netty.tlsSessionTimeout");
+    /**
+     * Use the OpenSSL/BoringSSL TLS engine from netty-tcnative if it is on the classpath and supports the client
+     * configuration. Otherwise, and always for a user-supplied {@link StandardClientProperties#SSL_CONTEXT}, the JDK
+     * engine is used. Defaults to {@code true}.
+     */
+    public static final ClientProperty<Boolean> OPENSSL = ClientProperty.create("netty.openssl");
+    /**
+     * Executor for blocking body IO, i.e. reading streaming request bodies and buffering request bodies. The client
+     * does not shut down this executor. If not set, the executor of the transport resources is used: a
+     * virtual-thread-per-task executor on JDK 21+, otherwise a bounded thread pool.
+     */
+    public static final ClientProperty<ExecutorService> BLOCKING_IO_EXECUTOR = ClientProperty.create("netty.blockingIoExecutor");
+    /**
+     * Size in bytes above which a request body buffered for {@link StandardClientProperties#BUFFER_REQUEST} is moved
+     * from memory to a memory-mapped temporary file. The file is deleted once the request and all its copies are done.
+     * If the file cannot be created, the body stays in memory. Bodies larger than 2 GiB cannot be buffered either way.
+     * Defaults to 4 MiB.
+     */
+    public static final ClientProperty<Integer> BUFFER_SPILL_THRESHOLD = ClientProperty.create("netty.bufferSpillThreshold");
+    /**
+     * Enable hedging of GET and HEAD requests. If no response headers have arrived after this percentile (between 0 and
+     * 1, e.g. {@code 0.95}) of recent response times, a copy of the request is sent, and the first response is used.
+     * The other request is cancelled. Disabled by default.
+     */
+    public static final ClientProperty<Double> HEDGE_PERCENTILE = ClientProperty.create("netty.hedgePercentile");
+    /**
+     * Maximum fraction of requests that are hedged when {@link #HEDGE_PERCENTILE} is set, so that hedging does not
+     * overload a struggling server. Defaults to {@code 0.1}.
+     */
+    public static final ClientProperty<Double> HEDGE_MAX_RATIO = ClientProperty.create("netty.hedgeMaxRatio");
+    /**
+     * Limit the number of concurrent requests of the client adaptively. The limit grows while requests succeed, and
+     * shrinks when the server responds with 429 or 503, a read times out, or most recent response times rise far above
+     * their recent minimum. Requests above the limit wait in a queue. Defaults to {@code false}.
+     */
+    public static final ClientProperty<Boolean> ADAPTIVE_CONCURRENCY = ClientProperty.create("netty.adaptiveConcurrency");
+    /**
+     * Maximum number of requests waiting for the {@link #ADAPTIVE_CONCURRENCY adaptive concurrency limit}. Further
+     * requests fail immediately with a {@link java.util.concurrent.RejectedExecutionException}. Unbounded by default.
+     */
+    public static final ClientProperty<Integer> ADAPTIVE_CONCURRENCY_MAX_QUEUE = ClientProperty.create("netty.adaptiveConcurrencyMaxQueue");
+    /**
+     * Coalesce concurrent identical GET requests of the client: while a GET is in flight, further GETs with the same
+     * URI and headers wait for its response instead of being sent. Every caller receives its own view of the buffered
+     * response. Responses without a known content length or with bodies above 1 MiB are not shared, and the waiting
+     * requests are sent separately. Defaults to {@code false}.
+     */
+    public static final ClientProperty<Boolean> COALESCE_REQUESTS = ClientProperty.create("netty.coalesceRequests");
+    /**
+     * Enable a response cache for GET requests, with this maximum total body size in bytes. Successful responses with
+     * an {@code ETag} and a body of at most 1 MiB are cached per URI and signing key. Later requests revalidate the
+     * entry with {@code If-None-Match}, and on a {@code 304 Not Modified} response, the cached body is returned.
+     * Disabled by default.
+     */
+    public static final ClientProperty<Long> RESPONSE_CACHE_MAX_BYTES = ClientProperty.create("netty.responseCacheMaxBytes");
+    /**
+     * Time after which an entry of the response cache (see {@link #RESPONSE_CACHE_MAX_BYTES}) is dropped instead of
+     * revalidated. Defaults to 5 minutes.
+     */
+    public static final ClientProperty<Duration> RESPONSE_CACHE_MAX_AGE = ClientProperty.create("netty.responseCacheMaxAge");
+    /**
+     * Maximum number of attempts per request, including the first, for retries by the client itself. Unlike the
+     * retries of the SDK, the backoff between attempts is scheduled on the event loop and does not block a thread.
+     * Throttling responses ({@code 429}, {@code 503}) and connection failures are retried for all requests, server
+     * errors and other IO failures only for idempotent requests ({@code GET}, {@code HEAD}, {@code PUT},
+     * {@code DELETE}, or an {@code opc-retry-token} header). Requests with a streaming body are only retried if
+     * request bodies are buffered: with {@link StandardClientProperties#BUFFER_REQUEST} set to {@code false}, they
+     * are sent once and not retried, and this is logged once at debug level. A {@code Retry-After} response header
+     * replaces the backoff. The SDK retry configuration should be disabled when this is enabled, so that requests are
+     * not retried twice. If not set, the client does not retry.
+     */
+    public static final ClientProperty<Integer> RETRY_MAX_ATTEMPTS = ClientProperty.create("netty.retryMaxAttempts");
+    /**
+     * Backoff before the first retry of {@link #RETRY_MAX_ATTEMPTS}. The backoff doubles for every further retry, and
+     * the actual delay is uniformly random between zero and the backoff. Defaults to 100 milliseconds.
+     */
+    public static final ClientProperty<Duration> RETRY_BASE_DELAY = ClientProperty.create("netty.retryBaseDelay");
+    /**
+     * Maximum backoff between retries. A response whose {@code Retry-After} is longer is not retried. Defaults to 30
+     * seconds.
+     */
+    public static final ClientProperty<Duration> RETRY_MAX_DELAY = ClientProperty.create("netty.retryMaxDelay");
+    /**
+     * Retry budget of {@link #RETRY_MAX_ATTEMPTS}: number of retries that each request adds to the budget of the
+     * client. The budget holds at most 10 retries and starts full. When it is empty, failures are returned without
+     * retrying, so that retries do not multiply the load during an outage. Defaults to {@code 0.1}.
+     */
+    public static final ClientProperty<Double> RETRY_BUDGET_RATIO = ClientProperty.create("netty.retryBudgetRatio");
+    /**
+     * Time that a request with an {@code Expect: 100-continue} header waits for the {@code 100 Continue} response
+     * before it sends the body anyway. If the server sends a final response (e.g. an authorization or precondition
+     * failure) first, the body is not sent at all. Defaults to 1 second.
+     */
+    public static final ClientProperty<Duration> EXPECT_CONTINUE_TIMEOUT = ClientProperty.create("netty.expectContinueTimeout");
+    /**
+     * Number of connections to open when the client is built, so that the first requests don't wait for name
+     * resolution and the TCP and TLS handshakes. Limited to {@link #MAX_CONNECTIONS}. With HTTP/2, a single connection
+     * is opened. Defaults to {@code 0}.
+     */
+    public static final ClientProperty<Integer> PRECONNECT = ClientProperty.create("netty.preconnect");
+    /**
+     * Maximum time that building the client waits for the connections of {@link #PRECONNECT} to be established. When
+     * clients are built during application startup, this delays readiness until the connections are ready. If not
+     * set, the connections are opened in the background.
+     */
+    public static final ClientProperty<Duration> PRECONNECT_AWAIT = ClientProperty.create("netty.preconnectAwait");
+    /**
+     * Resolve host names with netty's asynchronous DNS resolver instead of the blocking JDK resolver. The resolver is
+     * shared by all clients using the same {@link #TRANSPORT_RESOURCES}, and caches records for their TTL and failed
+     * lookups for 10 seconds, independently of the JVM DNS cache settings. It reads the name servers and search
+     * domains from the system configuration, unless the resources were created with explicit name servers. Defaults to
+     * {@code true} for resources with explicit name servers, {@code false} otherwise.
+     */
+    public static final ClientProperty<Boolean> ASYNC_DNS = ClientProperty.create("netty.asyncDns");
+    /**
+     * Metrics instance that the client records into. If not set, metrics are not accessible.
+     */
+    public static final ClientProperty<NettyClientMetrics> METRICS = ClientProperty.create("netty.metrics");
+
+    private NettyClientProperties() {
+    }
+}
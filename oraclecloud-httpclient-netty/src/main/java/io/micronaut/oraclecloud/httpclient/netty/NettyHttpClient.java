@@ -23,45 +23,103 @@ import com.oracle.bmc.http.client.RequestInterceptor;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.ClientAuth;
 import io.netty.handler.ssl.IdentityCipherSuiteFilter;
 import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.resolver.DefaultAddressResolverGroup;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.KeyStoreBuilderParameters;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManagerFactory;
 import java.net.URI;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.time.Duration;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 final class NettyHttpClient implements HttpClient {
     final URI baseUri;
+    final RequestTemplate requestTemplate;
     final List<RequestInterceptor> requestInterceptors;
     final Bootstrap bootstrap;
-    final NioEventLoopGroup group;
+    final NettyTransportResources transportResources;
+    /**
+     * Run on close to give up this client's use of {@link #transportResources}.
+     */
+    private final Runnable releaseTransportResources;
+    /**
+     * Resolver group of {@link #bootstrap}, closed with the client.
+     */
+    private final MetricsAddressResolverGroup resolverGroup;
     final ExecutorService blockingIoExecutor;
     final SslContext sslContext;
     final String host;
     final int port;
     final boolean buffered;
+    final int bufferSpillThreshold;
+    /**
+     * Read timeout, or {@code 0} to disable it.
+     */
+    final long readTimeoutNanos;
+    /**
+     * Time to wait for {@code 100 Continue} before sending the body anyway.
+     */
+    final long expectContinueTimeoutNanos;
+    /**
+     * Hedging state, or {@code null} if hedging is disabled.
+     */
+    final RequestHedging hedging;
+    /**
+     * Retry state, or {@code null} if retries are disabled.
+     */
+    final RequestRetry retry;
+    /**
+     * Adaptive concurrency limit, or {@code null} if disabled.
+     */
+    final ConcurrencyLimiter concurrencyLimiter;
+    /**
+     * GET request coalescing, or {@code null} if disabled.
+     */
+    final RequestCoalescing coalescing;
+    /**
+     * GET response cache, or {@code null} if disabled.
+     */
+    final ResponseCache responseCache;
+    final ConnectionPool connectionPool;
+    final NettyClientMetrics metrics;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     NettyHttpClient(NettyHttpClientBuilder builder) {
         baseUri = Objects.requireNonNull(builder.baseUri, "baseUri");
+        requestTemplate = new RequestTemplate(baseUri);
         requestInterceptors = builder.requestInterceptors.stream()
                 .sorted(Comparator.comparingInt(p -> p.priority))
                 .map(p -> p.value)
                 .collect(Collectors.toList());
+        ApplicationProtocolConfig alpn = builder.http2 ? new ApplicationProtocolConfig(
+                ApplicationProtocolConfig.Protocol.ALPN,
+                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                ApplicationProtocolNames.HTTP_2,
+                ApplicationProtocolNames.HTTP_1_1
+        ) : null;
         int defaultPort;
         if (builder.baseUri.getScheme().equalsIgnoreCase("http")) {
             defaultPort = 80;
@@ -70,7 +128,8 @@ final class NettyHttpClient implements HttpClient {
             defaultPort = 443;
             try {
                 if (builder.sslContext == null) {
-                    SslContextBuilder sslBuilder = SslContextBuilder.forClient();
+                    SslContextBuilder sslBuilder = SslContextBuilder.forClient()
+                            .sslProvider(sslProvider(builder, alpn != null));
                     if (builder.keyStore != null) {
                         KeyManagerFactory kmf = KeyManagerFactory.getInstance("PKIX");
                         kmf.init(new KeyStoreBuilderParameters(KeyStore.Builder.newInstance(
@@ -86,15 +145,30 @@ final class NettyHttpClient implements HttpClient {
                         tmf = new CustomTrustManagerFactory(tmf, builder.hostnameVerifier);
                     }
                     sslBuilder.trustManager(tmf);
+                    sslBuilder.applicationProtocolConfig(alpn);
+                    if (builder.tlsSessionCacheSize != null) {
+                        sslBuilder.sessionCacheSize(builder.tlsSessionCacheSize);
+                    }
+                    if (builder.tlsSessionTimeout != null) {
+                        sslBuilder.sessionTimeout(builder.tlsSessionTimeout.getSeconds());
+                    }
 
                     sslContext = sslBuilder.build();
                 } else {
+                    // the session cache of the user context is shared by all its users, only change it on request
+                    SSLSessionContext sessionContext = builder.sslContext.getClientSessionContext();
+                    if (builder.tlsSessionCacheSize != null) {
+                        sessionContext.setSessionCacheSize(builder.tlsSessionCacheSize);
+                    }
+                    if (builder.tlsSessionTimeout != null) {
+                        sessionContext.setSessionTimeout(Math.toIntExact(builder.tlsSessionTimeout.getSeconds()));
+                    }
                     sslContext = new JdkSslContext(
                             builder.sslContext,
                             true,
                             null,
                             IdentityCipherSuiteFilter.INSTANCE,
-                            null,
+                            alpn,
                             ClientAuth.NONE, // ignored for isClient=true
                             null,
                             false
@@ -110,19 +184,85 @@ final class NettyHttpClient implements HttpClient {
         }
         this.port = port;
         this.host = builder.baseUri.getHost();
+        NettyTransport transport = builder.transport == null ? NettyTransport.bestAvailable() : builder.transport;
+        if (builder.transportResources != null) {
+            // owned by the user
+            transportResources = builder.transportResources;
+            releaseTransportResources = () -> { };
+        } else if (builder.asyncPoolSize != 0) {
+            NettyTransportResources ownResources = new NettyTransportResources(builder.asyncPoolSize, transport);
+            transportResources = ownResources;
+            releaseTransportResources = ownResources::close;
+        } else {
+            NettyTransportResources defaultResources = NettyTransportResources.acquireDefault(transport);
+            transportResources = defaultResources;
+            releaseTransportResources = () -> NettyTransportResources.releaseDefault(defaultResources);
+        }
+        this.metrics = builder.metrics == null ? new NettyClientMetrics() : builder.metrics;
+        boolean asyncDns = builder.asyncDns == null ? transportResources.nameServers != null : builder.asyncDns;
+        resolverGroup = asyncDns ?
+                new MetricsAddressResolverGroup(transportResources.dnsResolverGroup(), true, metrics) :
+                new MetricsAddressResolverGroup(DefaultAddressResolverGroup.INSTANCE, false, metrics);
         bootstrap = new Bootstrap()
-                .channel(NioSocketChannel.class)
+                .group(transportResources.eventLoopGroup)
+                .channel(transportResources.socketChannelClass)
+                .option(ChannelOption.ALLOCATOR, transportResources.allocator)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(builder.connectTimeout.toMillis()))
+                .resolver(resolverGroup)
                 .remoteAddress(host, port);
-
-        group = new NioEventLoopGroup(builder.asyncPoolSize);
-        bootstrap.group(group);
-        blockingIoExecutor = Executors.newCachedThreadPool();
         this.buffered = builder.buffered;
+        this.bufferSpillThreshold = builder.bufferSpillThreshold;
+        this.readTimeoutNanos = builder.readTimeout == null ? 0 : builder.readTimeout.toNanos();
+        this.expectContinueTimeoutNanos = builder.expectContinueTimeout.toNanos();
+        this.hedging = builder.hedgePercentile == null ? null : new RequestHedging(builder.hedgePercentile, builder.hedgeMaxRatio);
+        this.retry = builder.retryMaxAttempts == null || builder.retryMaxAttempts <= 1 ? null :
+                new RequestRetry(builder.retryMaxAttempts, builder.retryBaseDelay, builder.retryMaxDelay, builder.retryBudgetRatio);
+        this.concurrencyLimiter = builder.adaptiveConcurrency ? new ConcurrencyLimiter(metrics, builder.adaptiveConcurrencyMaxQueue) : null;
+        this.coalescing = builder.coalesceRequests ? new RequestCoalescing(this) : null;
+        this.responseCache = builder.responseCacheMaxBytes == null ? null : new ResponseCache(this, builder.responseCacheMaxBytes, builder.responseCacheMaxAge);
+        blockingIoExecutor = new MeteredExecutorService(
+                builder.blockingIoExecutor == null ? transportResources.blockingIoExecutor : builder.blockingIoExecutor,
+                metrics);
+        // HTTP/2 is only negotiated over TLS
+        connectionPool = new ConnectionPool(this, builder.maxConnections, builder.connectionIdleTimeout.toNanos(),
+                builder.http2 && sslContext != null);
+        metrics.pools.add(connectionPool);
+        if (builder.preconnect > 0) {
+            preconnect(builder.preconnect, builder.preconnectAwait);
+        }
+    }
+
+    private void preconnect(int connections, Duration await) {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> future = connectionPool.preconnect(connections).thenApply(n -> {
+            metrics.preconnectedConnections.add(n);
+            metrics.preconnectNanos.add(System.nanoTime() - start);
+            return n;
+        });
+        if (await != null) {
+            try {
+                future.get(await.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // not fatal, requests connect on demand
+            }
+        }
+    }
+
+    private static SslProvider sslProvider(NettyHttpClientBuilder builder, boolean alpn) {
+        if (builder.openSsl &&
+                OpenSsl.isAvailable() &&
+                (!alpn || SslProvider.isAlpnSupported(SslProvider.OPENSSL)) &&
+                (builder.keyStore == null || OpenSsl.supportsKeyManagerFactory())) {
+            return SslProvider.OPENSSL;
+        } else {
+            return SslProvider.JDK;
+        }
     }
 
     ByteBufAllocator alloc() {
-        return (ByteBufAllocator) bootstrap.config().options().getOrDefault(ChannelOption.ALLOCATOR, ByteBufAllocator.DEFAULT);
+        return transportResources.allocator;
     }
 
     @Override
@@ -137,7 +277,15 @@ final class NettyHttpClient implements HttpClient {
 
     @Override
     public void close() {
-        group.shutdownGracefully();
-        blockingIoExecutor.shutdown();
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        connectionPool.close();
+        metrics.pools.remove(connectionPool);
+        resolverGroup.close();
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.close();
+        }
+        releaseTransportResources.run();
     }
 }
@@ -30,9 +30,19 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 
 final class NettyHttpClientBuilder implements HttpClientBuilder {
     private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final Duration DEFAULT_CONNECTION_IDLE_TIMEOUT = Duration.ofSeconds(30);
+    private static final int DEFAULT_BUFFER_SPILL_THRESHOLD = 4 * 1024 * 1024;
+    private static final double DEFAULT_HEDGE_MAX_RATIO = 0.1;
+    private static final Duration DEFAULT_RESPONSE_CACHE_MAX_AGE = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_EXPECT_CONTINUE_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_RETRY_BASE_DELAY = Duration.ofMillis(100);
+    private static final Duration DEFAULT_RETRY_MAX_DELAY = Duration.ofSeconds(30);
+    private static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
     
     final Collection<PrioritizedValue<RequestInterceptor>> requestInterceptors = new ArrayList<>();
     
@@ -41,6 +51,32 @@ final class NettyHttpClientBuilder implements HttpClientBuilder {
     Duration readTimeout = DEFAULT_TIMEOUT;
     int asyncPoolSize = 0;
     boolean buffered = true;
+    int bufferSpillThreshold = DEFAULT_BUFFER_SPILL_THRESHOLD;
+    int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    Duration connectionIdleTimeout = DEFAULT_CONNECTION_IDLE_TIMEOUT;
+    boolean http2 = false;
+    NettyTransportResources transportResources;
+    NettyTransport transport;
+    Integer tlsSessionCacheSize;
+    Duration tlsSessionTimeout;
+    NettyClientMetrics metrics;
+    ExecutorService blockingIoExecutor;
+    Double hedgePercentile;
+    boolean adaptiveConcurrency = false;
+    int adaptiveConcurrencyMaxQueue = Integer.MAX_VALUE;
+    boolean coalesceRequests = false;
+    Long responseCacheMaxBytes;
+    Duration responseCacheMaxAge = DEFAULT_RESPONSE_CACHE_MAX_AGE;
+    Duration expectContinueTimeout = DEFAULT_EXPECT_CONTINUE_TIMEOUT;
+    Integer retryMaxAttempts;
+    Duration retryBaseDelay = DEFAULT_RETRY_BASE_DELAY;
+    Duration retryMaxDelay = DEFAULT_RETRY_MAX_DELAY;
+    double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+    int preconnect = 0;
+    Duration preconnectAwait;
+    Boolean asyncDns;
+    double hedgeMaxRatio = DEFAULT_HEDGE_MAX_RATIO;
+    boolean openSsl = true;
 
     KeyStoreWithPassword keyStore;
     KeyStore trustStore;
@@ -71,6 +107,58 @@ final class NettyHttpClientBuilder implements HttpClientBuilder {
             hostnameVerifier = (HostnameVerifier) value;
         } else if (key == StandardClientProperties.SSL_CONTEXT) {
             sslContext = (SSLContext) value;
+        } else if (key == NettyClientProperties.MAX_CONNECTIONS) {
+            maxConnections = (Integer) value;
+        } else if (key == NettyClientProperties.CONNECTION_IDLE_TIMEOUT) {
+            connectionIdleTimeout = (Duration) value;
+        } else if (key == NettyClientProperties.HTTP2) {
+            http2 = (Boolean) value;
+        } else if (key == NettyClientProperties.TRANSPORT_RESOURCES) {
+            transportResources = (NettyTransportResources) value;
+        } else if (key == NettyClientProperties.TRANSPORT) {
+            transport = (NettyTransport) value;
+        } else if (key == NettyClientProperties.TLS_SESSION_CACHE_SIZE) {
+            tlsSessionCacheSize = (Integer) value;
+        } else if (key == NettyClientProperties.TLS_SESSION_TIMEOUT) {
+            tlsSessionTimeout = (Duration) value;
+        } else if (key == NettyClientProperties.METRICS) {
+            metrics = (NettyClientMetrics) value;
+        } else if (key == NettyClientProperties.BLOCKING_IO_EXECUTOR) {
+            blockingIoExecutor = (ExecutorService) value;
+        } else if (key == NettyClientProperties.BUFFER_SPILL_THRESHOLD) {
+            bufferSpillThreshold = (Integer) value;
+        } else if (key == NettyClientProperties.HEDGE_PERCENTILE) {
+            hedgePercentile = (Double) value;
+        } else if (key == NettyClientProperties.HEDGE_MAX_RATIO) {
+            hedgeMaxRatio = (Double) value;
+        } else if (key == NettyClientProperties.ADAPTIVE_CONCURRENCY) {
+            adaptiveConcurrency = (Boolean) value;
+        } else if (key == NettyClientProperties.ADAPTIVE_CONCURRENCY_MAX_QUEUE) {
+            adaptiveConcurrencyMaxQueue = (Integer) value;
+        } else if (key == NettyClientProperties.COALESCE_REQUESTS) {
+            coalesceRequests = (Boolean) value;
+        } else if (key == NettyClientProperties.RESPONSE_CACHE_MAX_BYTES) {
+            responseCacheMaxBytes = (Long) value;
+        } else if (key == NettyClientProperties.RESPONSE_CACHE_MAX_AGE) {
+            responseCacheMaxAge = (Duration) value;
+        } else if (key == NettyClientProperties.RETRY_MAX_ATTEMPTS) {
+            retryMaxAttempts = (Integer) value;
+        } else if (key == NettyClientProperties.RETRY_BASE_DELAY) {
+            retryBaseDelay = (Duration) value;
+        } else if (key == NettyClientProperties.RETRY_MAX_DELAY) {
+            retryMaxDelay = (Duration) value;
+        } else if (key == NettyClientProperties.RETRY_BUDGET_RATIO) {
+            retryBudgetRatio = (Double) value;
+        } else if (key == NettyClientProperties.EXPECT_CONTINUE_TIMEOUT) {
+            expectContinueTimeout = (Duration) value;
+        } else if (key == NettyClientProperties.PRECONNECT) {
+            preconnect = (Integer) value;
+        } else if (key == NettyClientProperties.PRECONNECT_AWAIT) {
+            preconnectAwait = (Duration) value;
+        } else if (key == NettyClientProperties.ASYNC_DNS) {
+            asyncDns = (Boolean) value;
+        } else if (key == NettyClientProperties.OPENSSL) {
+            openSsl = (Boolean) value;
         } else {
             // todo: support all standard client properties
             throw new IllegalArgumentException(
@@ -24,51 +24,68 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
-import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.SSLEngine;
-import javax.net.ssl.SSLParameters;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 final class NettyHttpRequest implements HttpRequest {
+    private static final Logger LOG = LoggerFactory.getLogger(NettyHttpRequest.class);
     private static final long UNKNOWN_CONTENT_LENGTH = -1;
 
     private final NettyHttpClient client;
 
-    private final Map<String, Object> attributes;
+    /**
+     * Request attributes. Only created when the first attribute is set.
+     */
+    private Map<String, Object> attributes;
 
     private final Method method;
     private final HttpHeaders headers;
 
     private final StringBuilder uri;
     private final StringBuilder query;
+    /**
+     * Cached result of {@link #uri()}, reset when the path or query change.
+     */
+    private URI builtUri;
+    private HeaderMap headerMap;
 
     private Executor offloadExecutor;
 
@@ -76,21 +93,40 @@ final class NettyHttpRequest implements HttpRequest {
     private ByteBuf immediateBody;
     private InputStream blockingBody;
     private long blockingContentLength;
+    private FileBody fileBody;
+    /**
+     * {@link NettyRequestAttributes#DEADLINE} of the current execution in {@link System#nanoTime()} terms, only valid
+     * if {@link #hasDeadline} is set.
+     */
+    private long deadlineNanos;
+    private boolean hasDeadline;
+    /**
+     * The {@code If-None-Match} value added for {@link ResponseCache} revalidation by the current execution, if any.
+     */
+    private String revalidatedEtag;
+    /**
+     * Whether the interceptors have already run for the next execution, see {@link #intercept()}.
+     */
+    private boolean intercepted;
+    /**
+     * The headers before {@link #intercept()} ran, while {@link #intercepted}. A copy of this request starts from these
+     * headers, so that it is signed again when it is sent.
+     */
+    private HttpHeaders unsignedHeaders;
 
     public NettyHttpRequest(NettyHttpClient nettyHttpClient, Method method) {
         client = nettyHttpClient;
         this.method = method;
-        this.uri = new StringBuilder(client.baseUri.toString());
-        attributes = new HashMap<>();
+        this.uri = new StringBuilder(client.requestTemplate.baseUri);
         headers = new DefaultHttpHeaders();
         query = new StringBuilder();
     }
 
     private NettyHttpRequest(NettyHttpRequest from) {
         this.client = from.client;
-        this.attributes = new HashMap<>(from.attributes);
+        this.attributes = from.attributes == null ? null : new HashMap<>(from.attributes);
         this.method = from.method;
-        this.headers = from.headers.copy();
+        this.headers = from.intercepted ? from.unsignedHeaders.copy() : from.headers.copy();
         this.uri = new StringBuilder(from.uri);
         this.query = new StringBuilder(from.query);
         this.offloadExecutor = from.offloadExecutor;
@@ -99,6 +135,7 @@ final class NettyHttpRequest implements HttpRequest {
         this.immediateBody = from.immediateBody == null ? null : from.immediateBody.retainedDuplicate();
         this.blockingBody = from.blockingBody;
         this.blockingContentLength = from.blockingContentLength;
+        this.fileBody = from.fileBody;
     }
 
     @Override
@@ -110,10 +147,25 @@ final class NettyHttpRequest implements HttpRequest {
     public HttpRequest body(Object body) {
         immediateBody = null;
         blockingBody = null;
+        fileBody = null;
 
         if (body instanceof String) {
             immediateBody = ByteBufUtil.encodeString(client.alloc(), CharBuffer.wrap((CharSequence) body), StandardCharsets.UTF_8);
             returningBody = body;
+        } else if (body instanceof byte[]) {
+            // no copy, the array must not be modified until the request is done
+            immediateBody = Unpooled.wrappedBuffer((byte[]) body);
+            returningBody = body;
+        } else if (body instanceof ByteBuffer) {
+            immediateBody = Unpooled.wrappedBuffer((ByteBuffer) body);
+            returningBody = body;
+        } else if (FileBody.isFileBody(body)) {
+            try {
+                fileBody = FileBody.of(body);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to read file body", e);
+            }
+            returningBody = body;
         } else if (body instanceof InputStream) {
             body((InputStream) body, UNKNOWN_CONTENT_LENGTH);
         } else if (body == null) {
@@ -137,6 +189,7 @@ final class NettyHttpRequest implements HttpRequest {
     @Override
     public HttpRequest body(InputStream body, long contentLength) {
         immediateBody = null;
+        fileBody = null;
         blockingBody = body;
         blockingContentLength = contentLength;
         returningBody = body;
@@ -150,6 +203,7 @@ final class NettyHttpRequest implements HttpRequest {
 
     @Override
     public HttpRequest appendPathPart(String encodedPathPart) {
+        builtUri = null;
         boolean hasSlashLeft = uri.charAt(uri.length() - 1) == '/';
         boolean hasSlashRight = encodedPathPart.startsWith("/");
         if (hasSlashLeft) {
@@ -170,6 +224,7 @@ final class NettyHttpRequest implements HttpRequest {
 
     @Override
     public HttpRequest query(String name, String value) {
+        builtUri = null;
         if (query.length() > 0) {
             query.append('&');
         }
@@ -177,19 +232,19 @@ final class NettyHttpRequest implements HttpRequest {
         return this;
     }
 
-    private String buildUri() {
-        int length = uri.length();
-        if (query.length() != 0) {
-            uri.append('?').append(query);
-        }
-        String built = uri.toString();
-        uri.setLength(length); // remove query again
-        return built;
-    }
-
     @Override
     public URI uri() {
-        return URI.create(buildUri());
+        URI built = builtUri;
+        if (built == null) {
+            int length = uri.length();
+            if (query.length() != 0) {
+                uri.append('?').append(query);
+            }
+            built = URI.create(uri.toString());
+            uri.setLength(length); // remove query again
+            builtUri = built;
+        }
+        return built;
     }
 
     @Override
@@ -200,22 +255,32 @@ final class NettyHttpRequest implements HttpRequest {
 
     @Override
     public Map<String, List<String>> headers() {
-        return new HeaderMap(headers);
+        HeaderMap headerMap = this.headerMap;
+        if (headerMap == null) {
+            headerMap = new HeaderMap(headers);
+            this.headerMap = headerMap;
+        }
+        return headerMap;
     }
 
     @Override
     public Object attribute(String name) {
-        return attributes.get(name);
+        return attributes == null ? null : attributes.get(name);
     }
 
     @Override
     public HttpRequest removeAttribute(String name) {
-        attributes.remove(name);
+        if (attributes != null) {
+            attributes.remove(name);
+        }
         return this;
     }
 
     @Override
     public HttpRequest attribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
         attributes.put(name, value);
         return this;
     }
@@ -240,54 +305,221 @@ final class NettyHttpRequest implements HttpRequest {
 
     @Override
     public CompletionStage<HttpResponse> execute() {
+        if (client.retry != null) {
+            if (blockingBody == null) {
+                // copy before executing, the interceptors modify this request
+                return RetriedExecution.execute(client, this, new NettyHttpRequest(this));
+            } else if (client.buffered) {
+                // buffer first, so that the body can be replayed
+                return CompletableFuture.runAsync(this::bufferBody, client.blockingIoExecutor)
+                        .thenCompose(v -> execute());
+            } else if (LOG.isDebugEnabled() && client.retry.streamingBodyLogged.compareAndSet(false, true)) {
+                LOG.debug("Request bodies are not buffered, so requests with a streaming body are not retried");
+            }
+        }
+        return executeAttempt();
+    }
+
+    /**
+     * Execute this request without provider-level retries, coalescing it if enabled.
+     */
+    CompletionStage<HttpResponse> executeAttempt() {
+        if (client.coalescing != null && method == Method.GET && blockingBody == null && fileBody == null) {
+            return client.coalescing.execute(this);
+        }
+        return executeUncoalesced();
+    }
+
+    /**
+     * Execute this request without coalescing, hedging it if enabled.
+     */
+    CompletionStage<HttpResponse> executeUncoalesced() {
+        if (client.hedging != null && (method == Method.GET || method == Method.HEAD) &&
+                blockingBody == null && fileBody == null) {
+            long hedgeDelayNanos = client.hedging.onRequest();
+            if (hedgeDelayNanos != -1) {
+                // copy before executing, the interceptors modify this request
+                return HedgedExecution.execute(client, this, new NettyHttpRequest(this), hedgeDelayNanos);
+            }
+            long start = System.nanoTime();
+            return executeOnce().whenComplete((response, t) -> {
+                if (t == null) {
+                    client.hedging.record(System.nanoTime() - start);
+                }
+            });
+        }
+        return executeOnce();
+    }
+
+    /**
+     * Key that identifies identical requests for {@link RequestCoalescing}: the principal, the method, the URI and the
+     * headers, except those that are unique to every request. Must be computed after {@link #intercept()}, so that
+     * requests of different principals are never coalesced.
+     */
+    String coalescingKey() {
+        List<String> keyHeaders = new ArrayList<>();
+        for (Map.Entry<String, String> header : headers) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (!RequestCoalescing.IGNORED_HEADERS.contains(name)) {
+                keyHeaders.add(name + ':' + header.getValue());
+            }
+        }
+        Collections.sort(keyHeaders);
+        StringBuilder key = new StringBuilder().append(ResponseCache.principal(headers))
+                .append('\n').append(method).append(' ').append(uri());
+        for (String header : keyHeaders) {
+            key.append('\n').append(header);
+        }
+        return key.toString();
+    }
+
+    Executor offloadExecutor() {
+        return offloadExecutor;
+    }
+
+    HttpHeaders nettyHeaders() {
+        return headers;
+    }
+
+    /**
+     * Execute this request once, without hedging.
+     */
+    CompletionStage<HttpResponse> executeOnce() {
         if (client.buffered && blockingBody != null) {
-            // asynchronously buffer the body, then run execute() again
+            // asynchronously buffer the body, then run executeOnce() again
             return CompletableFuture.runAsync(this::bufferBody, client.blockingIoExecutor)
-                    .thenCompose(v -> execute());
+                    .thenCompose(v -> executeOnce());
         }
 
-        for (RequestInterceptor interceptor : client.requestInterceptors) {
-            interceptor.intercept(this);
+        if (revalidatedEtag != null) {
+            // added by a previous execution
+            headers.remove(HttpHeaderNames.IF_NONE_MATCH);
+            revalidatedEtag = null;
+        }
+        if (intercepted) {
+            intercepted = false;
+            unsignedHeaders = null;
+        } else {
+            runInterceptors();
         }
-
-        io.netty.handler.codec.http.HttpRequest nettyRequest = buildNettyRequest();
 
         CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        if (!scheduleDeadline(future)) {
+            return future;
+        }
 
-        ChannelFuture connectFuture = client.bootstrap.clone()
-                .handler(new ChannelInitializer<Channel>() {
-                    @Override
-                    protected void initChannel(Channel ch) {
-                        initializeChannel(ch, nettyRequest, future);
-                    }
-                })
-                .connect();
-        connectFuture.addListener((ChannelFutureListener) cf -> {
-            if (!cf.isSuccess()) {
-                future.completeExceptionally(cf.cause());
+        String cacheKey = null;
+        ResponseCache.Entry cached = null;
+        if (client.responseCache != null && method == Method.GET && blockingBody == null && fileBody == null &&
+                ResponseCache.isCacheable(headers)) {
+            cacheKey = ResponseCache.key(uri(), headers);
+            cached = client.responseCache.get(cacheKey);
+            if (cached != null) {
+                revalidatedEtag = cached.etag;
+                headers.set(HttpHeaderNames.IF_NONE_MATCH, revalidatedEtag);
+            }
+        }
+
+        boolean expectContinue = expectsContinue();
+        io.netty.handler.codec.http.HttpRequest nettyRequest = buildNettyRequest(expectContinue);
+        // with 100-continue, an immediate body is sent separately, once the server has agreed
+        ByteBuf deferredBody = expectContinue && fileBody == null && blockingBody == null ? immediateBody : null;
+
+        acquireConnection(future).whenComplete((channel, t) -> {
+            if (t != null) {
+                ReferenceCountUtil.release(nettyRequest);
+                ReferenceCountUtil.release(deferredBody);
+                future.completeExceptionally(t);
+            } else if (channel.eventLoop().inEventLoop()) {
+                startExchange(channel, nettyRequest, expectContinue, deferredBody, future);
+            } else {
+                channel.eventLoop().execute(() -> startExchange(channel, nettyRequest, expectContinue, deferredBody, future));
             }
         });
-        // close channel on any failure, including cancellation
-        future.exceptionally(t -> {
-            connectFuture.channel().close();
-            return null;
+        return cacheKey == null ? future : client.responseCache.handle(cacheKey, cached, future, offloadExecutor);
+    }
+
+    /**
+     * Run the interceptors (request signing) ahead of the execution, when the signed headers are needed earlier, e.g.
+     * for the {@link #coalescingKey()}. The next execution does not run them again, but a copy of this request (e.g. a
+     * hedge) is signed again.
+     */
+    void intercept() {
+        unsignedHeaders = headers.copy();
+        runInterceptors();
+        intercepted = true;
+    }
+
+    private void runInterceptors() {
+        for (RequestInterceptor interceptor : client.requestInterceptors) {
+            interceptor.intercept(this);
+        }
+    }
+
+    /**
+     * Acquire a connection for the exchange, waiting for the {@link ConcurrencyLimiter} first if it is enabled.
+     *
+     * @param future The response future, used to release the concurrency permit
+     */
+    private CompletableFuture<Channel> acquireConnection(CompletableFuture<HttpResponse> future) {
+        ConcurrencyLimiter limiter = client.concurrencyLimiter;
+        if (limiter == null) {
+            return client.connectionPool.acquire();
+        }
+        CompletableFuture<Void> permit = limiter.acquire();
+        // give up the place in the queue if the request is cancelled or times out while waiting
+        future.whenComplete((response, t) -> permit.cancel(false));
+        return permit.thenCompose(v -> {
+            long start = System.nanoTime();
+            future.whenComplete((response, t) -> {
+                if (t == null) {
+                    int status = response.status();
+                    limiter.release(System.nanoTime() - start, status == 429 || status == 503);
+                } else {
+                    Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                    limiter.release(-1, cause instanceof SocketTimeoutException);
+                }
+            });
+            return client.connectionPool.acquire();
         });
-        return future;
+    }
+
+    /**
+     * Fail the given future when the {@link NettyRequestAttributes#DEADLINE} passes before the response arrives. The
+     * response body is covered by a {@link DeadlineHandler} once the exchange has started.
+     *
+     * @return {@code false} if the deadline has already passed, and the future has been failed
+     */
+    boolean scheduleDeadline(CompletableFuture<HttpResponse> future) {
+        hasDeadline = false;
+        Instant deadline = (Instant) attribute(NettyRequestAttributes.DEADLINE);
+        if (deadline == null) {
+            return true;
+        }
+        long remainingNanos;
+        try {
+            remainingNanos = Duration.between(Instant.now(), deadline).toNanos();
+        } catch (ArithmeticException e) {
+            // too far in the future to matter
+            return true;
+        }
+        if (remainingNanos <= 0) {
+            future.completeExceptionally(new DeadlineExceededException("Request deadline exceeded before the request was sent"));
+            return false;
+        }
+        hasDeadline = true;
+        deadlineNanos = System.nanoTime() + remainingNanos;
+        ScheduledFuture<?> timeout = client.transportResources.eventLoopGroup.schedule(
+                () -> future.completeExceptionally(new DeadlineExceededException("Request deadline exceeded")),
+                remainingNanos, TimeUnit.NANOSECONDS);
+        future.whenComplete((response, t) -> timeout.cancel(false));
+        return true;
     }
 
     private void bufferBody() {
-        ByteBuf buf = (blockingContentLength == UNKNOWN_CONTENT_LENGTH ?
-                client.alloc().buffer() :
-                client.alloc().buffer(Math.toIntExact(blockingContentLength)));
+        ByteBuf buf;
         try {
-            byte[] arr = new byte[4096];
-            while (true) {
-                int n = blockingBody.read(arr);
-                if (n == -1) {
-                    break;
-                }
-                buf.writeBytes(arr, 0, n);
-            }
+            buf = SpillingBodyBuffer.read(blockingBody, blockingContentLength, client.alloc(), client.bufferSpillThreshold);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -295,9 +527,16 @@ final class NettyHttpRequest implements HttpRequest {
         immediateBody = buf;
     }
 
-    private io.netty.handler.codec.http.HttpRequest buildNettyRequest() {
-        String uriString = buildUri();
+    /**
+     * Whether the request has a body and asks for {@code Expect: 100-continue}. The body is then only sent when the
+     * server agrees, see {@link ExpectContinueHandler}.
+     */
+    private boolean expectsContinue() {
+        return headers.containsValue(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE, true) &&
+                (fileBody != null || blockingBody != null || (immediateBody != null && immediateBody.isReadable()));
+    }
 
+    private io.netty.handler.codec.http.HttpRequest buildNettyRequest(boolean expectContinue) {
         HttpMethod method;
         switch (this.method) {
             case GET:
@@ -322,21 +561,22 @@ final class NettyHttpRequest implements HttpRequest {
                 throw new AssertionError(this.method);
         }
 
-        URI uri = URI.create(uriString);
         if (!headers.contains(HttpHeaderNames.HOST)) {
-            headers.add(HttpHeaderNames.HOST, uri.getHost());
+            headers.add(HttpHeaderNames.HOST, client.requestTemplate.host);
         }
 
-        String pathAndQuery = uri.getRawPath();
-        if (uri.getRawQuery() != null) {
-            pathAndQuery = pathAndQuery + "?" + uri.getRawQuery();
-        }
+        String pathAndQuery = client.requestTemplate.requestTarget(uri, query);
 
         boolean hasTransferHeader = headers.contains(HttpHeaderNames.CONTENT_LENGTH) ||
                 headers.contains(HttpHeaderNames.TRANSFER_ENCODING);
 
         DefaultHttpRequest nettyRequest;
-        if (blockingBody != null) {
+        if (fileBody != null) {
+            if (!hasTransferHeader) {
+                headers.add(HttpHeaderNames.CONTENT_LENGTH, fileBody.length);
+            }
+            nettyRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, pathAndQuery, headers);
+        } else if (blockingBody != null) {
             if (!hasTransferHeader) {
                 if (blockingContentLength == UNKNOWN_CONTENT_LENGTH) {
                     headers.add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
@@ -350,35 +590,56 @@ final class NettyHttpRequest implements HttpRequest {
             if (!hasTransferHeader) {
                 headers.add(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
             }
+            if (expectContinue) {
+                return new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, pathAndQuery, headers);
+            }
             nettyRequest = new DefaultFullHttpRequest(
                     HttpVersion.HTTP_1_1, method, pathAndQuery,
                     body,
                     headers,
-                    new DefaultHttpHeaders(true) // trailing header
+                    EmptyHttpHeaders.INSTANCE // trailing header
             );
         }
         return nettyRequest;
     }
 
-    private void initializeChannel(Channel ch, io.netty.handler.codec.http.HttpRequest nettyRequest, CompletableFuture<HttpResponse> future) {
-        if (client.sslContext != null) {
-            SslHandler sslHandler = client.sslContext.newHandler(ch.alloc(), client.host, client.port);
-            // enable host verification
-            SSLEngine engine = sslHandler.engine();
-            SSLParameters params = engine.getSSLParameters();
-            params.setEndpointIdentificationAlgorithm("HTTPS");
-            engine.setSSLParameters(params);
+    private void startExchange(Channel channel, io.netty.handler.codec.http.HttpRequest nettyRequest, boolean expectContinue, ByteBuf deferredBody, CompletableFuture<HttpResponse> future) {
+        if (future.isDone()) {
+            // cancelled while waiting for a connection
+            ReferenceCountUtil.release(nettyRequest);
+            ReferenceCountUtil.release(deferredBody);
+            client.connectionPool.release(channel, true);
+            return;
+        }
+        // close channel on any failure, including cancellation
+        future.exceptionally(t -> {
+            channel.close();
+            return null;
+        });
 
-            ch.pipeline().addLast(sslHandler);
+        ConnectionPool.PooledConnection connection = ConnectionPool.connection(channel);
+        if (expectContinue) {
+            channel.pipeline().addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, new ExpectContinueHandler(
+                    client.expectContinueTimeoutNanos,
+                    connection,
+                    () -> sendBody(channel, deferredBody, future),
+                    () -> ReferenceCountUtil.release(deferredBody)));
+        }
+        if (hasDeadline) {
+            channel.pipeline().addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, new DeadlineHandler(deadlineNanos));
         }
         LimitedBufferingBodyHandler limitedBufferingBodyHandler = new LimitedBufferingBodyHandler(4096);
         UndecidedBodyHandler undecidedBodyHandler = new UndecidedBodyHandler();
-        ch.pipeline()
-                .addLast(new HttpClientCodec())
-                .addLast(new ChannelInboundHandlerAdapter() {
+        channel.pipeline()
+                .addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, new ChannelInboundHandlerAdapter() {
                     @Override
                     public void channelRead(ChannelHandlerContext ctx, Object msg) {
                         if (msg instanceof io.netty.handler.codec.http.HttpResponse) {
+                            connection.onResponse((io.netty.handler.codec.http.HttpResponse) msg);
+                            int status = ((io.netty.handler.codec.http.HttpResponse) msg).status().code();
+                            if (status == 429 || status == 503) {
+                                client.metrics.throttledResponses.increment();
+                            }
                             future.complete(new NettyHttpResponse((io.netty.handler.codec.http.HttpResponse) msg, limitedBufferingBodyHandler, undecidedBodyHandler, offloadExecutor));
                             ctx.pipeline().remove(this);
 
@@ -395,24 +656,42 @@ final class NettyHttpRequest implements HttpRequest {
                         future.completeExceptionally(cause);
                         ctx.pipeline().remove(this);
                     }
-                })
-                .addLast(limitedBufferingBodyHandler)
-                .addLast(undecidedBodyHandler)
-                .addLast(new ChannelInboundHandlerAdapter() {
+
                     @Override
-                    public void channelActive(ChannelHandlerContext ctx) throws Exception {
-                        ctx.pipeline().remove(this);
-                        ctx.writeAndFlush(nettyRequest, ch.voidPromise());
+                    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+                        future.completeExceptionally(new IOException("Connection closed before the response was received"));
+                        super.channelInactive(ctx);
+                    }
+                })
+                .addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, limitedBufferingBodyHandler)
+                .addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, undecidedBodyHandler);
 
-                        if (blockingBody != null) {
-                            ctx.pipeline()
-                                    .addLast(new StreamWritingHandler(
-                                            blockingBody, client.blockingIoExecutor, new DefaultLastHttpContent()));
-                        }
+        channel.writeAndFlush(nettyRequest, channel.voidPromise());
+        if (!expectContinue) {
+            sendBody(channel, null, future);
+        }
+        channel.read();
+    }
 
-                        ctx.read();
-                        super.channelActive(ctx);
-                    }
-                });
+    /**
+     * Send the body of a request whose headers have already been sent. Immediate bodies are sent with the headers,
+     * unless the request waits for {@code 100 Continue}.
+     *
+     * @param deferredBody The immediate body, if it was not sent with the headers
+     */
+    private void sendBody(Channel channel, ByteBuf deferredBody, CompletableFuture<HttpResponse> future) {
+        if (deferredBody != null) {
+            channel.writeAndFlush(new DefaultLastHttpContent(deferredBody), channel.voidPromise());
+        } else if (fileBody != null) {
+            fileBody.write(channel).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    future.completeExceptionally(f.cause());
+                }
+            });
+        } else if (blockingBody != null) {
+            channel.pipeline()
+                    .addBefore(ConnectionPool.CONNECTION_HANDLER_NAME, null, new StreamWritingHandler(
+                            blockingBody, client.blockingIoExecutor, new DefaultLastHttpContent()));
+        }
     }
 }
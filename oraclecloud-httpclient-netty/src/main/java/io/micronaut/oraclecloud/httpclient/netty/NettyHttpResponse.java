@@ -15,14 +15,17 @@
  */
 package io.micronaut.oraclecloud.httpclient.netty;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.CollectionType;
-import com.oracle.bmc.http.client.HttpResponse;
 import com.oracle.bmc.http.client.Serialization;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
@@ -30,13 +33,15 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.function.Function;
 
-final class NettyHttpResponse implements HttpResponse {
+final class NettyHttpResponse implements PublishingHttpResponse {
     private final io.netty.handler.codec.http.HttpResponse nettyResponse;
     private final LimitedBufferingBodyHandler limitedBufferingBodyHandler;
     private final UndecidedBodyHandler undecidedBodyHandler;
     private final Executor offloadExecutor;
+    private HeaderMap headerMap;
 
     NettyHttpResponse(io.netty.handler.codec.http.HttpResponse nettyResponse, LimitedBufferingBodyHandler limitedBufferingBodyHandler, UndecidedBodyHandler undecidedBodyHandler, Executor offloadExecutor) {
         this.nettyResponse = nettyResponse;
@@ -45,6 +50,10 @@ final class NettyHttpResponse implements HttpResponse {
         this.offloadExecutor = offloadExecutor;
     }
 
+    io.netty.handler.codec.http.HttpResponse nettyResponse() {
+        return nettyResponse;
+    }
+
     @Override
     public int status() {
         return nettyResponse.status().code();
@@ -52,7 +61,12 @@ final class NettyHttpResponse implements HttpResponse {
 
     @Override
     public Map<String, List<String>> headers() {
-        return new HeaderMap(nettyResponse.headers());
+        HeaderMap headerMap = this.headerMap;
+        if (headerMap == null) {
+            headerMap = new HeaderMap(nettyResponse.headers());
+            this.headerMap = headerMap;
+        }
+        return headerMap;
     }
 
     @Override
@@ -60,11 +74,16 @@ final class NettyHttpResponse implements HttpResponse {
         return undecidedBodyHandler.asInputStream();
     }
 
+    @Override
+    public Flow.Publisher<ByteBuffer> publishBody() {
+        return undecidedBodyHandler.asPublisher();
+    }
+
     /**
      * Get the body as a buffer, falling back to {@link LimitedBufferingBodyHandler} if the body has already been
      * requested previously as another type.
      */
-    private CompletableFuture<ByteBuf> bodyAsBuffer() {
+    CompletableFuture<ByteBuf> bodyAsBuffer() {
         CompletableFuture<ByteBuf> buffer;
         if (undecidedBodyHandler.hasDecided()) {
             buffer = limitedBufferingBodyHandler.getFuture().thenApply(ByteBuf::retain);
@@ -74,31 +93,41 @@ final class NettyHttpResponse implements HttpResponse {
         return buffer;
     }
 
-    @Override
-    public <T> CompletionStage<T> body(Class<T> type) {
-        return thenApply(bodyAsBuffer(), buf -> {
-            try {
-                return Serialization.getObjectMapper().readValue((InputStream) new ByteBufInputStream(buf), type);
+    /**
+     * Deserialize the body. If the body has not been requested as another type before, it is parsed incrementally as
+     * it arrives, and only data binding is left once the future completes.
+     */
+    private <T> CompletionStage<T> jsonBody(JavaType type) {
+        ObjectMapper mapper = Serialization.getObjectMapper();
+        if (undecidedBodyHandler.hasDecided()) {
+            return thenApply(limitedBufferingBodyHandler.getFuture().thenApply(ByteBuf::retain), buf -> {
+                try {
+                    return mapper.readValue((InputStream) new ByteBufInputStream(buf), type);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    buf.release();
+                }
+            });
+        }
+        return thenApply(undecidedBodyHandler.asJson(mapper), tokens -> {
+            try (JsonParser parser = JsonBodyHandler.asParser(tokens, mapper)) {
+                return mapper.readValue(parser, type);
             } catch (IOException e) {
                 throw new CompletionException(e);
-            } finally {
-                buf.release();
             }
         });
     }
 
+    @Override
+    public <T> CompletionStage<T> body(Class<T> type) {
+        return jsonBody(Serialization.getObjectMapper().constructType(type));
+    }
+
     @Override
     public <T> CompletionStage<List<T>> listBody(Class<T> type) {
         CollectionType listType = Serialization.getObjectMapper().getTypeFactory().constructCollectionType(List.class, type);
-        return thenApply(bodyAsBuffer(), buf -> {
-            try {
-                return Serialization.getObjectMapper().readValue((InputStream) new ByteBufInputStream(buf), listType);
-            } catch (IOException e) {
-                throw new CompletionException(e);
-            } finally {
-                buf.release();
-            }
-        });
+        return jsonBody(listType);
     }
 
     @Override
@@ -125,5 +154,6 @@ final class NettyHttpResponse implements HttpResponse {
         if (!undecidedBodyHandler.hasDecided()) {
             undecidedBodyHandler.discard();
         }
+        limitedBufferingBodyHandler.release();
     }
 }
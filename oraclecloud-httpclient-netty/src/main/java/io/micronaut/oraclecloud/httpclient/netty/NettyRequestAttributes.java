@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpRequest;
+
+/**
+ * Request attributes ({@link HttpRequest#attribute(String, Object)}) understood by the netty client.
+ */
+public final class NettyRequestAttributes {
+    /**
+     * Deadline for the whole request, as a {@link java.time.Instant}: waiting for a connection, sending the request,
+     * and receiving the full response body. When the deadline passes, the connection is closed, and the response (or
+     * the response body) fails with a {@link DeadlineExceededException}. Request copies, e.g. for retries, share the
+     * same deadline.
+     */
+    public static final String DEADLINE = "netty.deadline";
+
+    private NettyRequestAttributes() {
+    }
+}
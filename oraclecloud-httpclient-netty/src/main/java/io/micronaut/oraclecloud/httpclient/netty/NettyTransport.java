@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Socket transport used by the netty client. The native transports are only available when the corresponding netty
+ * library ({@code netty-transport-native-epoll} or {@code netty-incubator-transport-native-io_uring}) and its native
+ * code for the current platform are on the classpath.
+ */
+public enum NettyTransport {
+    /**
+     * The JDK NIO transport. Always available.
+     */
+    NIO(null, null, null, null) {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        Class<? extends DatagramChannel> datagramChannelClass() {
+            return NioDatagramChannel.class;
+        }
+    },
+    /**
+     * The native epoll transport (Linux).
+     */
+    EPOLL("io.netty.channel.epoll.Epoll",
+            "io.netty.channel.epoll.EpollEventLoopGroup",
+            "io.netty.channel.epoll.EpollSocketChannel",
+            "io.netty.channel.epoll.EpollDatagramChannel"),
+    /**
+     * The native io_uring transport (Linux 5.9+).
+     */
+    IO_URING("io.netty.incubator.channel.uring.IOUring",
+            "io.netty.incubator.channel.uring.IOUringEventLoopGroup",
+            "io.netty.incubator.channel.uring.IOUringSocketChannel",
+            "io.netty.incubator.channel.uring.IOUringDatagramChannel");
+
+    private final String availabilityClass;
+    private final String eventLoopGroupClass;
+    private final String socketChannelClass;
+    private final String datagramChannelClass;
+
+    private volatile Boolean available;
+
+    NettyTransport(String availabilityClass, String eventLoopGroupClass, String socketChannelClass, String datagramChannelClass) {
+        this.availabilityClass = availabilityClass;
+        this.eventLoopGroupClass = eventLoopGroupClass;
+        this.socketChannelClass = socketChannelClass;
+        this.datagramChannelClass = datagramChannelClass;
+    }
+
+    /**
+     * The transport used when none is configured: io_uring if available, then epoll, then NIO.
+     *
+     * @return The best available transport
+     */
+    public static NettyTransport bestAvailable() {
+        if (IO_URING.isAvailable()) {
+            return IO_URING;
+        } else if (EPOLL.isAvailable()) {
+            return EPOLL;
+        } else {
+            return NIO;
+        }
+    }
+
+    /**
+     * Whether this transport can be used on this platform.
+     *
+     * @return {@code true} iff this transport is available
+     */
+    public boolean isAvailable() {
+        Boolean available = this.available;
+        if (available == null) {
+            try {
+                available = (Boolean) Class.forName(availabilityClass, true, NettyTransport.class.getClassLoader())
+                        .getMethod("isAvailable")
+                        .invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                available = false;
+            }
+            this.available = available;
+        }
+        return available;
+    }
+
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        requireAvailable();
+        try {
+            return (EventLoopGroup) Class.forName(eventLoopGroupClass, true, NettyTransport.class.getClassLoader())
+                    .getConstructor(int.class, ThreadFactory.class)
+                    .newInstance(threads, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + this + " event loop group", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Class<? extends SocketChannel> socketChannelClass() {
+        requireAvailable();
+        try {
+            return (Class<? extends SocketChannel>) Class.forName(socketChannelClass, true, NettyTransport.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to load " + this + " socket channel", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Class<? extends DatagramChannel> datagramChannelClass() {
+        requireAvailable();
+        try {
+            return (Class<? extends DatagramChannel>) Class.forName(datagramChannelClass, true, NettyTransport.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to load " + this + " datagram channel", e);
+        }
+    }
+
+    private void requireAvailable() {
+        if (!isAvailable()) {
+            throw new IllegalStateException("The " + this + " transport is not available on this platform");
+        }
+    }
+}
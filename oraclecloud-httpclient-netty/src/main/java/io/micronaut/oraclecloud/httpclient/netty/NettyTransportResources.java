@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DnsAddressResolverGroup;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.resolver.dns.SequentialDnsServerAddressStreamProvider;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport resources that can be shared by any number of clients: the event loop group, the buffer allocator, the
+ * executor for blocking body IO, and the asynchronous DNS resolver (see {@link NettyClientProperties#ASYNC_DNS}).
+ * <p>
+ * Clients that are not given resources through {@link NettyClientProperties#TRANSPORT_RESOURCES} share a default
+ * instance per {@link NettyTransport}, which is closed when the last of these clients is closed. Resources passed
+ * explicitly are owned by the caller and must be closed by the caller after all clients using them have been closed.
+ */
+public final class NettyTransportResources implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(NettyTransportResources.class);
+    private static final Object DEFAULT_LOCK = new Object();
+    private static final Map<NettyTransport, NettyTransportResources> DEFAULT_RESOURCES = new EnumMap<>(NettyTransport.class);
+    /**
+     * Maximum number of threads of the blocking executor when virtual threads are not available.
+     */
+    private static final int MAX_BLOCKING_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * Time that failed DNS lookups are cached, the same as the JDK default for
+     * {@code networkaddress.cache.negative.ttl}.
+     */
+    private static final int DNS_NEGATIVE_TTL_SECONDS = 10;
+
+    final NettyTransport transport;
+    final EventLoopGroup eventLoopGroup;
+    final Class<? extends SocketChannel> socketChannelClass;
+    final ByteBufAllocator allocator;
+    final ExecutorService blockingIoExecutor;
+    /**
+     * DNS servers for the asynchronous resolver, or {@code null} to use the system configuration.
+     */
+    final List<InetSocketAddress> nameServers;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    /**
+     * Number of clients using these resources as default resources. Guarded by {@link #DEFAULT_LOCK}.
+     */
+    private int defaultUsers;
+    /**
+     * Created on first use. Guarded by {@code this}.
+     */
+    private DnsAddressResolverGroup dnsResolverGroup;
+
+    /**
+     * Create new resources with the default number of event loop threads, using the
+     * {@link NettyTransport#bestAvailable() best available} transport.
+     */
+    public NettyTransportResources() {
+        this(0);
+    }
+
+    /**
+     * Create new resources using the {@link NettyTransport#bestAvailable() best available} transport.
+     *
+     * @param eventLoopThreads Number of event loop threads, or {@code 0} for the netty default
+     */
+    public NettyTransportResources(int eventLoopThreads) {
+        this(eventLoopThreads, NettyTransport.bestAvailable());
+    }
+
+    /**
+     * Create new resources.
+     *
+     * @param eventLoopThreads Number of event loop threads, or {@code 0} for the netty default
+     * @param transport        The transport to use
+     * @throws IllegalStateException If the transport is not available on this platform
+     */
+    public NettyTransportResources(int eventLoopThreads, NettyTransport transport) {
+        this(eventLoopThreads, transport, null);
+    }
+
+    /**
+     * Create new resources whose asynchronous DNS resolver queries the given servers instead of the servers of the
+     * system configuration. Clients using these resources resolve asynchronously unless
+     * {@link NettyClientProperties#ASYNC_DNS} is set to {@code false}.
+     *
+     * @param eventLoopThreads Number of event loop threads, or {@code 0} for the netty default
+     * @param transport        The transport to use
+     * @param nameServers      The DNS servers, queried in order, or {@code null} for the system configuration
+     * @throws IllegalStateException If the transport is not available on this platform
+     */
+    public NettyTransportResources(int eventLoopThreads, NettyTransport transport, List<InetSocketAddress> nameServers) {
+        this.transport = transport;
+        this.nameServers = nameServers == null ? null : List.copyOf(nameServers);
+        this.socketChannelClass = transport.socketChannelClass();
+        this.eventLoopGroup = transport.newEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("oci-netty-event-loop"));
+        this.allocator = ByteBufAllocator.DEFAULT;
+        this.blockingIoExecutor = newBlockingIoExecutor();
+    }
+
+    /**
+     * Create the executor for blocking body IO. On JDK 21+, every task gets its own virtual thread. On older JDKs, the
+     * number of threads is bounded by {@link #MAX_BLOCKING_THREADS}, and further tasks are queued.
+     */
+    private static ExecutorService newBlockingIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // JDK < 21
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_BLOCKING_THREADS, MAX_BLOCKING_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new DefaultThreadFactory("oci-netty-blocking"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Acquire the default shared resources for a transport, creating them if necessary. Must be paired with a call to
+     * {@link #releaseDefault(NettyTransportResources)}.
+     *
+     * @param transport The transport
+     * @return The default resources
+     */
+    static NettyTransportResources acquireDefault(NettyTransport transport) {
+        synchronized (DEFAULT_LOCK) {
+            NettyTransportResources resources = DEFAULT_RESOURCES.computeIfAbsent(transport, t -> {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Creating default netty client resources with the {} transport", t);
+                }
+                return new NettyTransportResources(0, t);
+            });
+            resources.defaultUsers++;
+            return resources;
+        }
+    }
+
+    /**
+     * Release resources obtained from {@link #acquireDefault(NettyTransport)}. The last release closes them.
+     *
+     * @param resources The resources returned by {@link #acquireDefault(NettyTransport)}
+     */
+    static void releaseDefault(NettyTransportResources resources) {
+        synchronized (DEFAULT_LOCK) {
+            if (DEFAULT_RESOURCES.get(resources.transport) != resources) {
+                throw new IllegalStateException("Not the default resources");
+            }
+            if (--resources.defaultUsers == 0) {
+                DEFAULT_RESOURCES.remove(resources.transport);
+                resources.close();
+            }
+        }
+    }
+
+    /**
+     * The transport these resources were created for.
+     *
+     * @return The active transport
+     */
+    public NettyTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Get the asynchronous DNS resolver, creating it if necessary. The resolver cache is shared by all event loops and
+     * all clients using these resources. Records are cached for their TTL, failed lookups for
+     * {@link #DNS_NEGATIVE_TTL_SECONDS}.
+     *
+     * @return The resolver group
+     */
+    synchronized AddressResolverGroup<InetSocketAddress> dnsResolverGroup() {
+        if (dnsResolverGroup == null) {
+            DnsNameResolverBuilder builder = new DnsNameResolverBuilder()
+                    .channelType(transport.datagramChannelClass())
+                    .socketChannelType(socketChannelClass)
+                    .resolveCache(new DefaultDnsCache(0, Integer.MAX_VALUE, DNS_NEGATIVE_TTL_SECONDS));
+            if (nameServers != null) {
+                builder.nameServerProvider(new SequentialDnsServerAddressStreamProvider(nameServers));
+            }
+            dnsResolverGroup = new DnsAddressResolverGroup(builder);
+        }
+        return dnsResolverGroup;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Shut down the event loop group and the blocking executor. Only the first call has an effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            eventLoopGroup.shutdownGracefully();
+            blockingIoExecutor.shutdown();
+            synchronized (this) {
+                if (dnsResolverGroup != null) {
+                    dnsResolverGroup.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection handler that enforces the read timeout. Unlike netty's idle state handlers, the timeout only runs while an
+ * exchange has requested data ({@link ChannelHandlerContext#read()}) that has not arrived yet. A consumer that is slow
+ * to request more of the response body, or an idle pooled connection, does not time out. Writes of the request body
+ * also count as activity, so a long upload does not time out while waiting for the response.
+ * <p>
+ * On timeout, a {@link SocketTimeoutException} is passed to the exchange handlers, and the channel is closed.
+ */
+final class PendingReadTimeoutHandler extends ChannelDuplexHandler {
+    private final long timeoutNanos;
+
+    private boolean inExchange = false;
+    /**
+     * Whether the current response is informational (e.g. {@code 100 Continue}), and the exchange continues after it.
+     */
+    private boolean informational = false;
+    private long lastActivity;
+    private ScheduledFuture<?> timeout;
+
+    PendingReadTimeoutHandler(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        if (inExchange && timeout == null) {
+            lastActivity = System.nanoTime();
+            schedule(ctx, timeoutNanos);
+        }
+        super.read(ctx);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpRequest) {
+            inExchange = true;
+        }
+        lastActivity = System.nanoTime();
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        // the requested data has arrived
+        cancel();
+        if (msg instanceof HttpResponse) {
+            informational = ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+        }
+        if (msg instanceof LastHttpContent && !informational) {
+            inExchange = false;
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancel();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancel();
+        super.channelInactive(ctx);
+    }
+
+    private void schedule(ChannelHandlerContext ctx, long delayNanos) {
+        timeout = ctx.executor().schedule(() -> {
+            timeout = null;
+            long idle = System.nanoTime() - lastActivity;
+            if (idle < timeoutNanos) {
+                // there was a write in the meantime
+                schedule(ctx, timeoutNanos - idle);
+            } else {
+                ctx.fireExceptionCaught(new SocketTimeoutException(
+                        "Read timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+                ctx.close();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancel() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+
+/**
+ * This channel handler exposes input data ({@link HttpContent}) as a {@link Flow.Publisher}. New data is only read
+ * from the channel ({@link ChannelHandlerContext#read()}) when the subscriber has outstanding demand and all previously
+ * read data has been delivered, so a slow subscriber slows down the connection instead of accumulating data. To make
+ * this effective, auto read is turned off while this handler is in the pipeline. When
+ * {@link LastHttpContent} is received, the end of the body is signalled to the next handler with an empty
+ * {@link LastHttpContent}, so the connection can be reused while the subscriber still consumes the last chunks.
+ * <p>
+ * Only one subscriber is supported. All subscriber signals happen on the event loop, and all state is confined to it.
+ */
+final class PublishingBodyHandler extends ChannelInboundHandlerAdapter implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+    private final EventExecutor executor;
+    private final Queue<ByteBuffer> queue = new ArrayDeque<>();
+
+    private ChannelHandlerContext context;
+    private Flow.Subscriber<? super ByteBuffer> subscriber;
+    private long demand = 0;
+    /**
+     * Whether the full body has been received (or {@link #failure} is set).
+     */
+    private boolean ended = false;
+    /**
+     * Whether the subscriber has received a terminal signal or cancelled.
+     */
+    private boolean terminated = false;
+    private Throwable failure;
+
+    PublishingBodyHandler(EventExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.context = ctx;
+        ctx.channel().config().setAutoRead(false);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        // the connection reads on its own again, e.g. to notice when an idle pooled connection is closed
+        ctx.channel().config().setAutoRead(true);
+        if (!ended) {
+            fail(new IOException("Connection closed before the response body was received"));
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpContent) {
+            ByteBuf content = ((HttpContent) msg).content();
+            if (content.isReadable() && !terminated) {
+                ByteBuffer copy = ByteBuffer.allocate(content.readableBytes());
+                content.readBytes(copy);
+                queue.add(copy.flip());
+            }
+            ((HttpContent) msg).release();
+
+            if (msg instanceof LastHttpContent) {
+                ended = true;
+                // hand the connection back before completing, so that it can be reused by a follow-up request
+                ctx.pipeline().remove(this);
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            drain();
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (ended) {
+            ctx.fireExceptionCaught(cause);
+        } else {
+            fail(cause);
+        }
+    }
+
+    /**
+     * Publish a complete body that is already available, when the channel is already gone.
+     *
+     * @param body The body, released by this method
+     */
+    void publishAll(ByteBuf body) {
+        try {
+            if (body.isReadable()) {
+                ByteBuffer copy = ByteBuffer.allocate(body.readableBytes());
+                body.readBytes(copy);
+                queue.add(copy.flip());
+            }
+        } finally {
+            body.release();
+        }
+        ended = true;
+        drain();
+    }
+
+    /**
+     * Fail the publisher when the channel is already gone.
+     *
+     * @param cause The failure
+     */
+    void publishFailure(Throwable cause) {
+        fail(cause);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        executor.execute(() -> {
+            if (this.subscriber != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("Only one subscriber allowed"));
+                return;
+            }
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+            drain();
+        });
+    }
+
+    @Override
+    public void request(long n) {
+        executor.execute(() -> {
+            if (terminated) {
+                return;
+            }
+            if (n <= 0) {
+                cancel0();
+                subscriber.onError(new IllegalArgumentException("Requested non-positive number of items: " + n));
+                return;
+            }
+            demand += n;
+            if (demand < 0) {
+                // overflow, treat as unbounded
+                demand = Long.MAX_VALUE;
+            }
+            drain();
+        });
+    }
+
+    @Override
+    public void cancel() {
+        executor.execute(this::cancel0);
+    }
+
+    private void cancel0() {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        queue.clear();
+        if (!ended) {
+            // discard the rest of the body, so that the connection can still be reused
+            ended = true;
+            if (context != null && !context.isRemoved()) {
+                context.pipeline()
+                        .addAfter(context.name(), null, DiscardingHandler.INSTANCE)
+                        .remove(this);
+                context.read();
+            }
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        failure = cause;
+        queue.clear();
+        drain();
+    }
+
+    private void drain() {
+        if (subscriber == null || terminated) {
+            return;
+        }
+        if (failure != null) {
+            terminated = true;
+            subscriber.onError(failure);
+            return;
+        }
+        while (demand > 0 && !queue.isEmpty()) {
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            subscriber.onNext(queue.poll());
+        }
+        if (queue.isEmpty()) {
+            if (ended) {
+                terminated = true;
+                subscriber.onComplete();
+            } else if (demand > 0 && context != null && !context.isRemoved()) {
+                context.read();
+            }
+        }
+    }
+}
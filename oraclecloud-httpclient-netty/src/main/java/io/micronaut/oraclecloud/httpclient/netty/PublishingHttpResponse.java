@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpResponse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link HttpResponse} that can also expose its body as a reactive stream. Responses returned by the netty client
+ * implement this interface, so reactive code can check for it and avoid the blocking {@link #streamBody()}.
+ */
+public interface PublishingHttpResponse extends HttpResponse {
+    /**
+     * Get the response body as a stream of buffers. Data is only read from the connection when the subscriber has
+     * requested it, so the subscriber controls the read rate. Only one subscriber is supported.
+     * <p>
+     * Signals are delivered on the netty event loop, so the subscriber must not block. Like the other body methods,
+     * this method may only be called once, and only if no other body method has been called.
+     *
+     * @return A publisher of the body data
+     */
+    Flow.Publisher<ByteBuffer> publishBody();
+}
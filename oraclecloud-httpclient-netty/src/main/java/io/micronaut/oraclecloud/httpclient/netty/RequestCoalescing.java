@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Single-flight execution of identical GET requests. The first request for a key (the leader) is sent; requests with
+ * the same key that are executed while it is in flight (followers) wait for its response. Once the leader response
+ * body has been buffered, the leader and every follower receive their own {@link BufferedHttpResponse} view of it.
+ * <p>
+ * A leader response that has already been buffered by the {@link ResponseCache} is shared directly. If the leader
+ * response is not suitable for sharing (no content length, or a large body), the leader receives it as-is and the
+ * followers are sent separately. The same happens if the leader fails for a reason that is specific to the leader,
+ * i.e. it was cancelled or its deadline passed. Other failures are shared.
+ * <p>
+ * The key is computed from the signed request, so that only requests of the same principal are coalesced. Every
+ * follower keeps its own {@link NettyRequestAttributes#DEADLINE}, and cancelling the leader cancels its exchange.
+ */
+final class RequestCoalescing {
+    /**
+     * Headers that are not part of the {@link NettyHttpRequest#coalescingKey() key}, because they are unique to every
+     * request. Of the signature, only the principal is part of the key.
+     */
+    static final Set<String> IGNORED_HEADERS = Set.of(
+            "opc-request-id", "opc-client-request-id", "date", "x-date", "authorization");
+    /**
+     * Maximum body size of a shared response.
+     */
+    static final long MAX_SHARED_BODY = 1024 * 1024;
+
+    private final NettyHttpClient client;
+
+    // guarded by this
+    private final Map<String, List<Follower>> inFlight = new HashMap<>();
+
+    RequestCoalescing(NettyHttpClient client) {
+        this.client = client;
+    }
+
+    CompletionStage<HttpResponse> execute(NettyHttpRequest request) {
+        request.intercept();
+        String key = request.coalescingKey();
+        Follower follower;
+        synchronized (this) {
+            List<Follower> followers = inFlight.get(key);
+            if (followers == null) {
+                inFlight.put(key, new ArrayList<>());
+                follower = null;
+            } else {
+                follower = new Follower(request);
+                followers.add(follower);
+            }
+        }
+        if (follower != null) {
+            client.metrics.coalescedRequests.increment();
+            // if the deadline passes, the leader response is not delivered to this follower
+            follower.request.scheduleDeadline(follower.future);
+            return follower.future;
+        }
+
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> exchange = request.executeUncoalesced().toCompletableFuture();
+        result.whenComplete((response, t) -> {
+            if (t != null) {
+                // cancelled by the caller, abort the exchange. The followers are then sent separately
+                exchange.cancel(false);
+            }
+        });
+        exchange.whenComplete((response, t) -> {
+            if (t != null) {
+                onLeaderFailure(key, t);
+                result.completeExceptionally(t);
+            } else if (response instanceof BufferedHttpResponse) {
+                // already buffered by the response cache
+                BufferedHttpResponse buffered = (BufferedHttpResponse) response;
+                ByteBuf body = buffered.retainedBody();
+                response.close();
+                share(key, buffered.status(), buffered.nettyHeaders(), body, request, result);
+            } else if (!isShareable(response)) {
+                sendFollowers(key);
+                if (!result.complete(response)) {
+                    response.close();
+                }
+            } else {
+                ((NettyHttpResponse) response).bodyAsBuffer().whenComplete((body, bodyFailure) -> {
+                    response.close();
+                    if (bodyFailure != null) {
+                        onLeaderFailure(key, bodyFailure);
+                        result.completeExceptionally(bodyFailure);
+                    } else {
+                        io.netty.handler.codec.http.HttpResponse nettyResponse = ((NettyHttpResponse) response).nettyResponse();
+                        share(key, nettyResponse.status().code(), nettyResponse.headers(), body, request, result);
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private static boolean isShareable(HttpResponse response) {
+        if (!(response instanceof NettyHttpResponse)) {
+            return false;
+        }
+        io.netty.handler.codec.http.HttpResponse nettyResponse = ((NettyHttpResponse) response).nettyResponse();
+        return nettyResponse.headers().contains(HttpHeaderNames.CONTENT_LENGTH) &&
+                HttpUtil.getContentLength(nettyResponse, MAX_SHARED_BODY + 1) <= MAX_SHARED_BODY;
+    }
+
+    private synchronized List<Follower> removeFollowers(String key) {
+        return inFlight.remove(key);
+    }
+
+    private void share(String key, int status, HttpHeaders headers, ByteBuf body, NettyHttpRequest leader, CompletableFuture<HttpResponse> leaderResult) {
+        List<Follower> followers = removeFollowers(key);
+        try {
+            for (Follower follower : followers) {
+                follower.request.discard();
+                complete(follower.future, status, headers, body, follower.request);
+            }
+            complete(leaderResult, status, headers, body, leader);
+        } finally {
+            body.release();
+        }
+    }
+
+    private void complete(CompletableFuture<HttpResponse> future, int status, HttpHeaders headers, ByteBuf body, NettyHttpRequest request) {
+        BufferedHttpResponse response = new BufferedHttpResponse(
+                status,
+                headers,
+                body.retainedDuplicate(),
+                request.offloadExecutor(),
+                client.transportResources.eventLoopGroup.next());
+        if (!future.complete(response)) {
+            // cancelled by the caller
+            response.close();
+        }
+    }
+
+    private void onLeaderFailure(String key, Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof CancellationException || cause instanceof DeadlineExceededException) {
+            sendFollowers(key);
+        } else {
+            for (Follower follower : removeFollowers(key)) {
+                follower.request.discard();
+                follower.future.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Send the followers of a leader separately.
+     */
+    private void sendFollowers(String key) {
+        for (Follower follower : removeFollowers(key)) {
+            if (follower.future.isDone()) {
+                follower.request.discard();
+                continue;
+            }
+            follower.request.executeUncoalesced().whenComplete((response, t) -> {
+                if (t != null) {
+                    follower.future.completeExceptionally(t);
+                } else if (!follower.future.complete(response)) {
+                    response.close();
+                }
+            });
+        }
+    }
+
+    private static final class Follower {
+        final NettyHttpRequest request;
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+
+        Follower(NettyHttpRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.util.Arrays;
+
+/**
+ * Hedging state of a client: the recent response latencies that the hedge delay is derived from, and the budget that
+ * caps the fraction of requests that are hedged.
+ */
+final class RequestHedging {
+    /**
+     * Number of latency samples kept.
+     */
+    private static final int WINDOW = 128;
+    /**
+     * Minimum number of samples before requests are hedged.
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * The delay is recomputed after this many new samples.
+     */
+    private static final int RECOMPUTE_INTERVAL = 16;
+    /**
+     * Maximum number of hedges that can be saved up while no hedging is necessary.
+     */
+    private static final double MAX_BUDGET = 10;
+
+    private final double percentile;
+    private final double maxRatio;
+
+    // guarded by this
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount = 0;
+    private int sinceRecompute = 0;
+    private long delayNanos = -1;
+    private double budget = 0;
+
+    /**
+     * @param percentile The latency percentile (between 0 and 1) after which a hedge is sent
+     * @param maxRatio   Maximum fraction of requests that are hedged
+     */
+    RequestHedging(double percentile, double maxRatio) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Hedge percentile must be between 0 and 1");
+        }
+        this.percentile = percentile;
+        this.maxRatio = maxRatio;
+    }
+
+    /**
+     * Called for every hedgeable request. Returns the delay after which the request should be hedged.
+     *
+     * @return The hedge delay, or {@code -1} if there are not enough samples yet
+     */
+    synchronized long onRequest() {
+        budget = Math.min(MAX_BUDGET, budget + maxRatio);
+        return delayNanos;
+    }
+
+    /**
+     * Take a hedge from the budget.
+     *
+     * @return {@code true} if the hedge may be sent
+     */
+    synchronized boolean tryHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * Record the time until the response headers of a request arrived.
+     *
+     * @param latencyNanos The latency
+     */
+    synchronized void record(long latencyNanos) {
+        samples[sampleCount++ % WINDOW] = latencyNanos;
+        if (sampleCount >= 2 * WINDOW) {
+            // keep the count bounded, it only matters whether the window is full
+            sampleCount -= WINDOW;
+        }
+        if (++sinceRecompute >= RECOMPUTE_INTERVAL || (delayNanos == -1 && sampleCount >= MIN_SAMPLES)) {
+            sinceRecompute = 0;
+            int n = Math.min(sampleCount, WINDOW);
+            if (n >= MIN_SAMPLES) {
+                long[] sorted = Arrays.copyOf(samples, n);
+                Arrays.sort(sorted);
+                delayNanos = sorted[Math.min(n - 1, (int) (percentile * n))];
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.Method;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retry state of a client: the backoff settings, and the budget that caps the number of retries relative to the
+ * number of requests, so that retries do not multiply the load on a struggling server. The budget starts full, so
+ * that occasional failures are always retried.
+ */
+final class RequestRetry {
+    /**
+     * Maximum number of retries that can be saved up.
+     */
+    private static final double MAX_BUDGET = 10;
+    /**
+     * Header of an OCI idempotency token. Requests that carry one can be retried regardless of the method.
+     */
+    private static final String HEADER_RETRY_TOKEN = "opc-retry-token";
+
+    final int maxAttempts;
+    /**
+     * Whether the skipped retry of a streaming request body has been logged, to log it only once per client.
+     */
+    final AtomicBoolean streamingBodyLogged = new AtomicBoolean();
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final double budgetRatio;
+
+    // guarded by this
+    private double budget = MAX_BUDGET;
+
+    /**
+     * @param maxAttempts Maximum number of attempts per request, including the first
+     * @param baseDelay   Backoff before the first retry, doubled for every further retry
+     * @param maxDelay    Maximum backoff, and maximum accepted {@code Retry-After}
+     * @param budgetRatio Number of retries added to the budget per request
+     */
+    RequestRetry(int maxAttempts, Duration baseDelay, Duration maxDelay, double budgetRatio) {
+        if (maxAttempts < 2) {
+            throw new IllegalArgumentException("Retry max attempts must be at least 2");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * Called for every retryable request.
+     */
+    synchronized void onRequest() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    /**
+     * Take a retry from the budget.
+     *
+     * @return {@code true} if the retry may be sent
+     */
+    synchronized boolean tryRetry() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * Delay before a retry, with "full jitter": uniformly random between zero and the exponential backoff.
+     *
+     * @param retry The number of retries sent before this one
+     * @return The delay in nanoseconds
+     */
+    long backoffNanos(int retry) {
+        long backoff = baseDelayNanos << Math.min(retry, 30);
+        if (backoff <= 0 || backoff > maxDelayNanos) {
+            // overflow, or capped
+            backoff = maxDelayNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     * Delay requested by a throttling response.
+     *
+     * @param headers The response headers
+     * @return The delay in nanoseconds, {@code -1} if the response does not request one, or {@code Long.MAX_VALUE} if
+     * it is longer than the maximum delay
+     */
+    long retryAfterNanos(HttpHeaders headers) {
+        String value = headers.get(HttpHeaderNames.RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+        long nanos;
+        try {
+            nanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            Date date = DateFormatter.parseHttpDate(value);
+            if (date == null) {
+                return -1;
+            }
+            nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+        }
+        return nanos > maxDelayNanos ? Long.MAX_VALUE : Math.max(0, nanos);
+    }
+
+    /**
+     * Whether a request can be sent again after it may already have been processed by the server.
+     */
+    static boolean isIdempotent(Method method, HttpHeaders requestHeaders) {
+        return method == Method.GET || method == Method.HEAD || method == Method.PUT || method == Method.DELETE ||
+                requestHeaders.contains(HEADER_RETRY_TOKEN);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import java.net.URI;
+
+/**
+ * The parts of a request that are the same for all requests of a client, computed once from the base URI. Request URIs
+ * always start with the base URI, so the request target (path and query) can be cut out of the built URI string
+ * without parsing it again.
+ */
+final class RequestTemplate {
+    /**
+     * The base URI string that request URIs start with.
+     */
+    final String baseUri;
+    /**
+     * Value of the {@code Host} header.
+     */
+    final String host;
+    /**
+     * Index in request URIs where the raw path starts, or {@code -1} if the URI has to be parsed to find it.
+     */
+    private final int pathStart;
+
+    RequestTemplate(URI baseUri) {
+        this.baseUri = baseUri.toString();
+        this.host = baseUri.getHost();
+        int pathStart = -1;
+        if (!baseUri.isOpaque() && baseUri.getRawQuery() == null && baseUri.getRawFragment() == null) {
+            String prefix = baseUri.getScheme() + "://" + baseUri.getRawAuthority();
+            if (this.baseUri.startsWith(prefix)) {
+                pathStart = prefix.length();
+            }
+        }
+        this.pathStart = pathStart;
+    }
+
+    /**
+     * Build the request target for the request line.
+     *
+     * @param uri   The request URI without the query, starting with {@link #baseUri}
+     * @param query The raw query, may be empty
+     * @return The path and query
+     */
+    String requestTarget(CharSequence uri, CharSequence query) {
+        if (pathStart == -1) {
+            URI parsed = URI.create(query.length() == 0 ? uri.toString() : uri + "?" + query);
+            return parsed.getRawQuery() == null ? parsed.getRawPath() : parsed.getRawPath() + "?" + parsed.getRawQuery();
+        }
+        StringBuilder target = new StringBuilder(uri.length() - pathStart + query.length() + 2);
+        if (uri.length() == pathStart) {
+            target.append('/');
+        } else {
+            target.append(uri, pathStart, uri.length());
+        }
+        if (query.length() != 0) {
+            target.append('?').append(query);
+        }
+        return target.toString();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpResponse;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * LRU cache of GET responses with an {@code ETag}, bounded by the total body size. Entries are keyed by the signing key
+ * (the {@code keyId} of the {@code Authorization} header) and the URI, so principals never see each other's responses.
+ * A cached entry is never served without asking the server: the request is sent with {@code If-None-Match}, and only a
+ * {@code 304 Not Modified} response is answered from the cache. This saves the transfer of the body, not the round
+ * trip.
+ */
+final class ResponseCache {
+    /**
+     * Maximum body size of a single entry.
+     */
+    static final int MAX_ENTRY_BYTES = 1024 * 1024;
+    private static final String KEY_ID = "keyId=\"";
+    private static final String HEADER_OBO_TOKEN = "opc-obo-token";
+
+    private final NettyHttpClient client;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+
+    // guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    ResponseCache(NettyHttpClient client, long maxBytes, Duration maxAge) {
+        this.client = client;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Whether a request with these headers can use the cache. Requests that already carry conditional headers are
+     * left alone.
+     */
+    static boolean isCacheable(HttpHeaders headers) {
+        return !headers.contains(HttpHeaderNames.IF_NONE_MATCH) &&
+                !headers.contains(HttpHeaderNames.IF_MATCH) &&
+                !headers.contains(HttpHeaderNames.IF_MODIFIED_SINCE) &&
+                !headers.contains(HttpHeaderNames.RANGE);
+    }
+
+    /**
+     * Cache key of a signed request.
+     */
+    static String key(URI uri, HttpHeaders headers) {
+        return principal(headers) + '\n' + uri;
+    }
+
+    /**
+     * The principal that signed a request: the {@code keyId} of the signature, and the {@code opc-obo-token} if
+     * present.
+     */
+    static String principal(HttpHeaders headers) {
+        StringBuilder key = new StringBuilder();
+        String authorization = headers.get(HttpHeaderNames.AUTHORIZATION);
+        if (authorization != null) {
+            int start = authorization.indexOf(KEY_ID);
+            if (start != -1) {
+                start += KEY_ID.length();
+                int end = authorization.indexOf('"', start);
+                if (end != -1) {
+                    key.append(authorization, start, end);
+                }
+            }
+        }
+        String oboToken = headers.get(HEADER_OBO_TOKEN);
+        if (oboToken != null) {
+            key.append(' ').append(oboToken);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the entry to revalidate for a request, or {@code null} if there is none. Expired entries are removed.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.storedNanos > maxAgeNanos) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (entry.body.length > maxBytes) {
+            remove(key);
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            totalBytes -= old.body.length;
+        }
+        totalBytes += entry.body.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes) {
+            totalBytes -= eldest.next().body.length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalBytes -= old.body.length;
+        }
+    }
+
+    /**
+     * Handle the response to a request that used the cache.
+     *
+     * @param key             The {@link #key(URI, HttpHeaders) cache key}
+     * @param cached          The entry that is revalidated by the request, or {@code null}
+     * @param exchange        The response future of the request
+     * @param offloadExecutor The offload executor of the request
+     * @return The response future for the caller
+     */
+    CompletableFuture<HttpResponse> handle(String key, Entry cached, CompletableFuture<HttpResponse> exchange, Executor offloadExecutor) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        result.whenComplete((response, t) -> {
+            if (t != null) {
+                exchange.cancel(false);
+            }
+        });
+        exchange.whenComplete((response, t) -> {
+            if (t != null) {
+                result.completeExceptionally(t);
+                return;
+            }
+            io.netty.handler.codec.http.HttpResponse nettyResponse = ((NettyHttpResponse) response).nettyResponse();
+            if (cached != null && response.status() == 304) {
+                response.close();
+                Entry revalidated = cached.revalidate(nettyResponse.headers());
+                put(key, revalidated);
+                client.metrics.responseCacheHits.increment();
+                complete(result, revalidated, offloadExecutor);
+            } else if (isStorable(nettyResponse)) {
+                ((NettyHttpResponse) response).bodyAsBuffer().whenComplete((body, bodyFailure) -> {
+                    response.close();
+                    if (bodyFailure != null) {
+                        result.completeExceptionally(bodyFailure);
+                        return;
+                    }
+                    Entry entry;
+                    try {
+                        entry = new Entry(nettyResponse.headers(), ByteBufUtil.getBytes(body));
+                    } finally {
+                        body.release();
+                    }
+                    put(key, entry);
+                    complete(result, entry, offloadExecutor);
+                });
+            } else {
+                // the resource changed and can't be cached anymore
+                remove(key);
+                if (!result.complete(response)) {
+                    response.close();
+                }
+            }
+        });
+        return result;
+    }
+
+    private static boolean isStorable(io.netty.handler.codec.http.HttpResponse response) {
+        HttpHeaders headers = response.headers();
+        return response.status().code() == 200 &&
+                headers.contains(HttpHeaderNames.ETAG) &&
+                !headers.containsValue(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_STORE, true) &&
+                headers.contains(HttpHeaderNames.CONTENT_LENGTH) &&
+                HttpUtil.getContentLength(response, MAX_ENTRY_BYTES + 1L) <= MAX_ENTRY_BYTES;
+    }
+
+    private void complete(CompletableFuture<HttpResponse> result, Entry entry, Executor offloadExecutor) {
+        // the entry body is never modified, so every response can wrap it directly
+        result.complete(new BufferedHttpResponse(
+                200,
+                entry.headers,
+                Unpooled.wrappedBuffer(entry.body),
+                offloadExecutor,
+                client.transportResources.eventLoopGroup.next()));
+    }
+
+    static final class Entry {
+        final String etag;
+        final HttpHeaders headers;
+        final byte[] body;
+        final long storedNanos;
+
+        private Entry(HttpHeaders headers, byte[] body) {
+            this.etag = headers.get(HttpHeaderNames.ETAG);
+            this.headers = headers;
+            this.body = body;
+            this.storedNanos = System.nanoTime();
+        }
+
+        /**
+         * Create a fresh entry with the same body, and the headers updated from a {@code 304} response.
+         */
+        Entry revalidate(HttpHeaders notModifiedHeaders) {
+            HttpHeaders merged = new DefaultHttpHeaders().set(headers);
+            for (String name : notModifiedHeaders.names()) {
+                if (!HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(name) &&
+                        !HttpHeaderNames.TRANSFER_ENCODING.contentEqualsIgnoreCase(name)) {
+                    merged.set(name, notModifiedHeaders.getAll(name));
+                }
+            }
+            return new Entry(merged, body);
+        }
+    }
+}
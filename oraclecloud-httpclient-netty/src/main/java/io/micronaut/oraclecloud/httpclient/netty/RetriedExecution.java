@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpResponse;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request with provider-level retries. Failed attempts are retried after a backoff that is scheduled on the event
+ * loop, so no thread waits in the meantime. Every retry sends a fresh {@link NettyHttpRequest#copy() copy} of the
+ * request as it was before the first attempt, so the interceptors (request signing) run again.
+ * <p>
+ * Retried are throttling responses ({@code 429} and {@code 503}) and connection failures for any request, and
+ * {@code 500}, {@code 502}, {@code 504} and other IO failures for {@link RequestRetry#isIdempotent idempotent}
+ * requests. A {@code Retry-After} header overrides the backoff. If there is no retry left, the last response or
+ * failure is returned.
+ */
+final class RetriedExecution {
+    private final NettyHttpClient client;
+    private final NettyHttpRequest template;
+    private final boolean idempotent;
+    private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+    /**
+     * Number of retries sent so far. Only modified by the completion of the current attempt.
+     */
+    private int retries = 0;
+
+    // guarded by this
+    private boolean finished = false;
+    private CompletableFuture<HttpResponse> attempt;
+    private ScheduledFuture<?> timer;
+
+    private RetriedExecution(NettyHttpClient client, NettyHttpRequest template) {
+        this.client = client;
+        this.template = template;
+        this.idempotent = RequestRetry.isIdempotent(template.method(), template.nettyHeaders());
+    }
+
+    /**
+     * @param client   The client
+     * @param first    The request to send immediately
+     * @param template A copy of the request, made before the first request was executed
+     * @return The response of the last attempt
+     */
+    static CompletableFuture<HttpResponse> execute(NettyHttpClient client, NettyHttpRequest first, NettyHttpRequest template) {
+        client.retry.onRequest();
+        RetriedExecution execution = new RetriedExecution(client, template);
+        execution.result.whenComplete((response, t) -> execution.finish(t != null));
+        execution.start(first);
+        return execution.result;
+    }
+
+    private void finish(boolean failed) {
+        CompletableFuture<HttpResponse> attempt;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            attempt = this.attempt;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+        if (failed && attempt != null) {
+            // cancelled by the user
+            attempt.cancel(false);
+        }
+        template.discard();
+    }
+
+    private void start(NettyHttpRequest request) {
+        CompletableFuture<HttpResponse> attempt = request.executeAttempt().toCompletableFuture();
+        synchronized (this) {
+            this.attempt = attempt;
+        }
+        attempt.whenComplete((response, t) -> {
+            long delayNanos = t == null ? retryDelay(response) : retryDelay(t);
+            if (delayNanos != -1 && scheduleRetry(delayNanos)) {
+                if (response != null) {
+                    response.close();
+                }
+            } else if (t != null) {
+                result.completeExceptionally(t);
+            } else if (!result.complete(response)) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * @return The delay before the retry, or {@code -1} if the response should not be retried
+     */
+    private long retryDelay(HttpResponse response) {
+        int status = response.status();
+        boolean throttled = status == 429 || status == 503;
+        if (!throttled && !(idempotent && (status == 500 || status == 502 || status == 504))) {
+            return -1;
+        }
+        if (response instanceof NettyHttpResponse) {
+            long retryAfter = client.retry.retryAfterNanos(((NettyHttpResponse) response).nettyResponse().headers());
+            if (retryAfter == Long.MAX_VALUE) {
+                // the server asks for a longer break than we are willing to wait
+                return -1;
+            } else if (retryAfter != -1) {
+                return retryAfter;
+            }
+        }
+        return client.retry.backoffNanos(retries);
+    }
+
+    /**
+     * @return The delay before the retry, or {@code -1} if the failure should not be retried
+     */
+    private long retryDelay(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof CancellationException || cause instanceof DeadlineExceededException) {
+            return -1;
+        }
+        // a failed connect means the request was not sent
+        if (cause instanceof ConnectException || (idempotent && cause instanceof IOException)) {
+            return client.retry.backoffNanos(retries);
+        }
+        return -1;
+    }
+
+    private boolean scheduleRetry(long delayNanos) {
+        if (retries + 1 >= client.retry.maxAttempts) {
+            return false;
+        }
+        Instant deadline = (Instant) template.attribute(NettyRequestAttributes.DEADLINE);
+        if (deadline != null && Instant.now().plusNanos(delayNanos).isAfter(deadline)) {
+            return false;
+        }
+        if (!client.retry.tryRetry()) {
+            client.metrics.retriesRejected.increment();
+            return false;
+        }
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            retries++;
+            timer = client.transportResources.eventLoopGroup.schedule(this::retry, delayNanos, TimeUnit.NANOSECONDS);
+        }
+        client.metrics.retries.increment();
+        return true;
+    }
+
+    private void retry() {
+        NettyHttpRequest copy;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            copy = (NettyHttpRequest) template.copy();
+        }
+        start(copy);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017-2022 original authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffers a request body so that it can be sent multiple times (e.g. on retry). Up to a threshold, the body is kept in
+ * memory. Larger bodies are written to a temporary file, which is then memory-mapped, so the body does not occupy heap
+ * or direct memory. Either way, the result is a normal reference-counted {@link ByteBuf}: request copies share it
+ * through {@link ByteBuf#retainedDuplicate()}, and the temporary file is deleted on the last release. The mapping
+ * itself is released by the garbage collector. If the temporary file cannot be created, the body is kept in memory
+ * after all.
+ */
+final class SpillingBodyBuffer {
+    private static final Logger LOG = LoggerFactory.getLogger(SpillingBodyBuffer.class);
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private SpillingBodyBuffer() {
+    }
+
+    /**
+     * Read the given stream fully.
+     *
+     * @param stream        The stream to read
+     * @param contentLength The length of the stream, or {@code -1} if unknown
+     * @param alloc         The allocator for in-memory buffers
+     * @param threshold     Number of bytes above which the body is moved to a temporary file
+     * @return The buffered body
+     * @throws IOException On read or write failure, or if the body is larger than 2 GiB
+     */
+    static ByteBuf read(InputStream stream, long contentLength, ByteBufAllocator alloc, int threshold) throws IOException {
+        if (contentLength > Integer.MAX_VALUE) {
+            // a buffer can't hold this, fail before writing it to disk
+            throw tooLarge(contentLength);
+        }
+        if (contentLength > threshold) {
+            return spill(stream, Unpooled.EMPTY_BUFFER, alloc);
+        }
+        ByteBuf buf = contentLength == -1 ? alloc.buffer() : alloc.buffer(Math.toIntExact(contentLength));
+        try {
+            byte[] arr = new byte[COPY_BUFFER_SIZE];
+            while (true) {
+                // long arithmetic, the threshold may be Integer.MAX_VALUE to never spill
+                int n = stream.read(arr, 0, (int) Math.min(arr.length, threshold + 1L - buf.readableBytes()));
+                if (n == -1) {
+                    return buf;
+                }
+                if (n > buf.maxWritableBytes()) {
+                    throw tooLarge((long) buf.readableBytes() + n);
+                }
+                buf.writeBytes(arr, 0, n);
+                if (buf.readableBytes() > threshold) {
+                    return spill(stream, buf, alloc);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (buf.refCnt() > 0) {
+                buf.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write the data read so far and the rest of the stream to a temporary file, and map it.
+     *
+     * @param stream The rest of the body
+     * @param head   The data read so far, released by this method
+     * @param alloc  The allocator for the in-memory fallback
+     */
+    private static ByteBuf spill(InputStream stream, ByteBuf head, ByteBufAllocator alloc) throws IOException {
+        Path file;
+        try {
+            file = Files.createTempFile("oci-netty-body", ".tmp");
+        } catch (IOException | RuntimeException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to create a temporary file for the request body, buffering it in memory", e);
+            }
+            return readInMemory(stream, head, alloc);
+        }
+        try {
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                try {
+                    while (head.isReadable()) {
+                        head.readBytes(channel, head.readableBytes());
+                    }
+                } finally {
+                    head.release();
+                }
+                byte[] arr = new byte[COPY_BUFFER_SIZE];
+                ByteBuffer wrapped = ByteBuffer.wrap(arr);
+                while (true) {
+                    int n = stream.read(arr);
+                    if (n == -1) {
+                        break;
+                    }
+                    wrapped.clear().limit(n);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
+                    }
+                }
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw tooLarge(size);
+                }
+                // the mapping stays valid after the channel is closed
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return new MappedFileBuf(file, mapped);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Read the rest of the stream into memory.
+     *
+     * @param stream The rest of the body
+     * @param head   The data read so far, released by this method
+     */
+    private static ByteBuf readInMemory(InputStream stream, ByteBuf head, ByteBufAllocator alloc) throws IOException {
+        ByteBuf buf = alloc.buffer(head.readableBytes());
+        try {
+            buf.writeBytes(head);
+            head.release();
+            while (true) {
+                int max = buf.maxWritableBytes();
+                if (max == 0) {
+                    if (stream.read() == -1) {
+                        return buf;
+                    }
+                    throw tooLarge(buf.maxCapacity() + 1L);
+                }
+                if (buf.writeBytes(stream, Math.min(COPY_BUFFER_SIZE, max)) == -1) {
+                    return buf;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (head.refCnt() > 0) {
+                head.release();
+            }
+            buf.release();
+            throw e;
+        }
+    }
+
+    private static IOException tooLarge(long size) {
+        return new IOException("Request body too large to buffer: " + size + " bytes, the maximum is "
+                + Integer.MAX_VALUE + " bytes");
+    }
+
+    /**
+     * A buffer backed by a mapped temporary file. The file is deleted when the buffer is deallocated.
+     */
+    static final class MappedFileBuf extends CompositeByteBuf {
+        final Path file;
+
+        private MappedFileBuf(Path file, MappedByteBuffer mapped) {
+            super(ByteBufAllocator.DEFAULT, true, 1, Unpooled.wrappedBuffer(mapped));
+            this.file = file;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // some platforms can't delete a file that is still mapped, try again on exit
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package io.micronaut.oraclecloud.httpclient.netty;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
@@ -24,45 +23,93 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Channel handler that exposes inbound data as an {@link InputStream}.
+ * <p>
+ * The event loop keeps reading until {@link #READAHEAD_BYTES} are queued. After that, reading resumes once the reader
+ * has consumed enough data. Auto read is turned off while this handler is in the pipeline, so that the connection
+ * actually stops reading. The reader waits on a {@link ReentrantLock} condition rather than an object monitor, so a
+ * virtual thread can unmount while it waits.
  */
 final class StreamReadingHandler extends ChannelInboundHandlerAdapter {
-    private final Object monitor = new Object();
-    private CompositeByteBuf buffer;
+    static final int READAHEAD_BYTES = 64 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+
+    // guarded by lock
+    private final Queue<ByteBuf> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private boolean added = false;
     private boolean done = false;
+    private boolean closed = false;
+    /**
+     * Whether the event loop has stopped reading because the readahead window is full. The reader requests more data
+     * when it drains the queue below the window.
+     */
+    private boolean stalled = false;
     private Throwable failure;
 
-    private ChannelHandlerContext context;
+    private volatile ChannelHandlerContext context;
 
     public InputStream getInputStream() throws Throwable {
-        synchronized (monitor) {
-            if (buffer == null) {
+        lock.lock();
+        try {
+            if (!added) {
                 if (failure != null) {
                     throw failure;
                 }
                 throw new IllegalStateException("Must be added to pipeline first");
             }
             return new Stream();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
-        synchronized (monitor) {
-            this.context = ctx;
-            buffer = ctx.alloc().compositeBuffer();
+        this.context = ctx;
+        ctx.channel().config().setAutoRead(false);
+        lock.lock();
+        try {
+            added = true;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof ByteBuf) {
-            synchronized (monitor) {
-                buffer.addComponent(true, (ByteBuf) msg);
-                monitor.notifyAll();
+            if (!((ByteBuf) msg).isReadable()) {
+                ((ByteBuf) msg).release();
+                ctx.read();
+                return;
+            }
+            boolean readMore;
+            lock.lock();
+            try {
+                if (failure != null || closed) {
+                    ((ByteBuf) msg).release();
+                    return;
+                }
+                queue.add((ByteBuf) msg);
+                queuedBytes += ((ByteBuf) msg).readableBytes();
+                readMore = queuedBytes < READAHEAD_BYTES;
+                stalled = !readMore;
+                dataAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+            if (readMore) {
+                ctx.read();
             }
         } else {
             super.channelRead(ctx, msg);
@@ -71,27 +118,44 @@ final class StreamReadingHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) {
-        synchronized (monitor) {
+        ctx.channel().config().setAutoRead(true);
+        lock.lock();
+        try {
             done = true;
-            monitor.notifyAll();
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        synchronized (monitor) {
-            if (buffer != null) {
+        lock.lock();
+        try {
+            if (failure == null && !done) {
                 // the stream hasn't finished yet, it can handle the failure.
                 failure = cause;
-                buffer.release();
-                buffer = null;
-                monitor.notifyAll();
+                releaseQueue();
+                dataAvailable.signal();
                 return;
             }
+        } finally {
+            lock.unlock();
         }
         ctx.fireExceptionCaught(cause);
     }
 
+    /**
+     * Must hold {@link #lock}.
+     */
+    private void releaseQueue() {
+        ByteBuf buf;
+        while ((buf = queue.poll()) != null) {
+            buf.release();
+        }
+        queuedBytes = 0;
+    }
+
     private void checkNotOnEventLoop() {
         // embedded channel always returns true for inEventLoop
         if (context.executor().inEventLoop() && !(context.channel() instanceof EmbeddedChannel)) {
@@ -113,40 +177,57 @@ final class StreamReadingHandler extends ChannelInboundHandlerAdapter {
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
-            synchronized (monitor) {
-                while (true) {
+            if (len == 0) {
+                return 0;
+            }
+            boolean resume = false;
+            int read = 0;
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
                     if (failure != null) {
                         throw new IOException("Failure in netty event loop", failure);
-                    } else if (buffer == null) {
+                    } else if (done || closed) {
                         return -1;
-                    } else if (buffer.isReadable()) {
-                        int read = Math.min(len, buffer.readableBytes());
-                        buffer.readBytes(b, off, read);
-                        buffer.discardSomeReadBytes();
-                        return read;
-                    } else if (done) {
-                        buffer.release();
-                        buffer = null;
-                    } else {
-                        context.read();
-                        checkNotOnEventLoop();
-                        try {
-                            monitor.wait();
-                        } catch (InterruptedException e) {
-                            throw new InterruptedIOException();
-                        }
                     }
+                    checkNotOnEventLoop();
+                    try {
+                        dataAvailable.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                while (read < len && !queue.isEmpty()) {
+                    ByteBuf head = queue.peek();
+                    int n = Math.min(len - read, head.readableBytes());
+                    head.readBytes(b, off + read, n);
+                    read += n;
+                    if (!head.isReadable()) {
+                        queue.poll().release();
+                    }
+                }
+                queuedBytes -= read;
+                if (stalled && queuedBytes < READAHEAD_BYTES) {
+                    stalled = false;
+                    resume = true;
                 }
+            } finally {
+                lock.unlock();
             }
+            if (resume) {
+                context.read();
+            }
+            return read;
         }
 
         @Override
         public int available() throws IOException {
-            synchronized (monitor) {
-                if (buffer == null) {
-                    return 0;
-                }
-                return buffer.readableBytes();
+            lock.lock();
+            try {
+                return (int) Math.min(Integer.MAX_VALUE, queuedBytes);
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -156,6 +237,13 @@ final class StreamReadingHandler extends ChannelInboundHandlerAdapter {
                 context.pipeline().remove(StreamReadingHandler.this);
             } catch (NoSuchElementException ignored) {
             }
+            lock.lock();
+            try {
+                closed = true;
+                releaseQueue();
+            } finally {
+                lock.unlock();
+            }
         }
     }
 }
@@ -15,21 +15,33 @@
  */
 package io.micronaut.oraclecloud.httpclient.netty;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.util.concurrent.Future;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 /**
  * Handler that buffers some input data until the user decides whether they want it all buffered or as a stream. After
- * that, handling is delegated to {@link StreamReadingHandler} or {@link BufferFutureHandler}.
+ * that, handling is delegated to {@link StreamReadingHandler}, {@link BufferFutureHandler}, {@link JsonBodyHandler} or
+ * {@link PublishingBodyHandler}.
+ * <p>
+ * If the channel closes before the decision is made (an HTTP/2 stream closes as soon as the response has ended), the
+ * buffered data is kept and handed to the user directly.
  */
 final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
     private ChannelHandlerContext context;
@@ -37,6 +49,10 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
     private Throwable failure;
 
     private boolean decided = false;
+    /**
+     * Whether this handler was replaced by the decided handler. Event loop only.
+     */
+    private boolean replaced = false;
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
@@ -46,6 +62,10 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (!replaced) {
+            // pipeline teardown, keep the data until the user decides
+            return;
+        }
         if (failure != null) {
             ctx.fireExceptionCaught(failure);
         }
@@ -86,6 +106,11 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
         decided = true;
 
         context.executor().execute(() -> {
+            if (context.isRemoved()) {
+                releaseBuffer();
+                return;
+            }
+            replaced = true;
             context.pipeline()
                     .addAfter(context.name(), null, DiscardingHandler.INSTANCE)
                     .remove(this);
@@ -100,7 +125,13 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
         decided = true;
 
         StreamReadingHandler streamReadingHandler = new StreamReadingHandler();
+        CompletableFuture<InputStream> streamFuture = new CompletableFuture<>();
         Future<?> addFuture = context.executor().submit(() -> {
+            if (context.isRemoved()) {
+                completeFromBuffer(streamFuture, buf -> new ByteBufInputStream(buf, true));
+                return;
+            }
+            replaced = true;
             context.pipeline()
                     .addAfter(context.name(), null, streamReadingHandler)
                     .addAfter(context.name(), null, new ChannelInboundHandlerAdapter() {
@@ -111,9 +142,12 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
                                 ((HttpContent) msg).release();
 
                                 if (msg instanceof LastHttpContent) {
-                                    ctx.pipeline()
-                                            .remove(this)
-                                            .remove(streamReadingHandler);
+                                    ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+                                    ctx.pipeline().remove(this);
+                                    // already removed if the stream was closed early
+                                    if (ctx.pipeline().context(streamReadingHandler) != null) {
+                                        ctx.pipeline().remove(streamReadingHandler);
+                                    }
                                 }
                             } else {
                                 ctx.fireChannelRead(msg);
@@ -123,8 +157,10 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
                     .remove(this);
             context.read();
         });
-        CompletableFuture<InputStream> streamFuture = new CompletableFuture<>();
         addFuture.addListener(future -> {
+            if (streamFuture.isDone()) {
+                return;
+            }
             if (future.isSuccess()) {
                 InputStream stream;
                 try {
@@ -149,6 +185,11 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
 
         BufferFutureHandler futureHandler = new BufferFutureHandler();
         context.executor().execute(() -> {
+            if (context.isRemoved()) {
+                completeFromBuffer(futureHandler.future, buf -> buf);
+                return;
+            }
+            replaced = true;
             context.pipeline()
                     .addAfter(context.name(), null, futureHandler)
                     .remove(this);
@@ -156,4 +197,84 @@ final class UndecidedBodyHandler extends ChannelInboundHandlerAdapter {
         });
         return futureHandler.future;
     }
+
+    public CompletableFuture<TokenBuffer> asJson(ObjectMapper mapper) {
+        if (decided) {
+            throw new IllegalStateException("Already replaced");
+        }
+        decided = true;
+
+        JsonBodyHandler jsonHandler = new JsonBodyHandler(mapper);
+        context.executor().execute(() -> {
+            if (context.isRemoved()) {
+                CompletableFuture<ByteBuf> buffer = new CompletableFuture<>();
+                completeFromBuffer(buffer, buf -> buf);
+                buffer.whenComplete((buf, t) -> {
+                    if (t == null) {
+                        jsonHandler.parseAll(buf);
+                    } else {
+                        jsonHandler.future.completeExceptionally(t);
+                    }
+                });
+                return;
+            }
+            replaced = true;
+            context.pipeline()
+                    .addAfter(context.name(), null, jsonHandler)
+                    .remove(this);
+            context.read();
+        });
+        return jsonHandler.future;
+    }
+
+    public Flow.Publisher<ByteBuffer> asPublisher() {
+        if (decided) {
+            throw new IllegalStateException("Already replaced");
+        }
+        decided = true;
+
+        PublishingBodyHandler publishingHandler = new PublishingBodyHandler(context.executor());
+        context.executor().execute(() -> {
+            if (context.isRemoved()) {
+                CompletableFuture<ByteBuf> buffer = new CompletableFuture<>();
+                completeFromBuffer(buffer, buf -> buf);
+                buffer.whenComplete((buf, t) -> {
+                    if (t == null) {
+                        publishingHandler.publishAll(buf);
+                    } else {
+                        publishingHandler.publishFailure(t);
+                    }
+                });
+                return;
+            }
+            replaced = true;
+            // no read here, the publisher reads on demand
+            context.pipeline()
+                    .addAfter(context.name(), null, publishingHandler)
+                    .remove(this);
+        });
+        return publishingHandler;
+    }
+
+    private <T> void completeFromBuffer(CompletableFuture<T> future, Function<ByteBuf, T> mapper) {
+        boolean complete = !buffer.isEmpty() && buffer.get(buffer.size() - 1) instanceof LastHttpContent;
+        if (failure != null || !complete) {
+            releaseBuffer();
+            future.completeExceptionally(failure != null ? failure : new IOException("Connection closed before the response body was received"));
+            return;
+        }
+        CompositeByteBuf composite = context.alloc().compositeBuffer(buffer.size());
+        for (HttpContent content : buffer) {
+            composite.addComponent(true, content.content());
+        }
+        buffer = null;
+        future.complete(mapper.apply(composite));
+    }
+
+    private void releaseBuffer() {
+        for (HttpContent content : buffer) {
+            content.release();
+        }
+        buffer = null;
+    }
 }
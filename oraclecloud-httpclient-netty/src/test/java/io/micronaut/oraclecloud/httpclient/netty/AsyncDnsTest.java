@@ -0,0 +1,173 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpClient;
+import com.oracle.bmc.http.client.HttpProvider;
+import com.oracle.bmc.http.client.HttpResponse;
+import com.oracle.bmc.http.client.Method;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@ExtendWith(NettyRule.class)
+public class AsyncDnsTest {
+    private static final HttpProvider PROVIDER = new NettyHttpProvider();
+    private static final String HOST = "oci-dns-test.example";
+    private static final String MISSING_HOST = "oci-dns-missing.example";
+
+    public NettyRule netty;
+
+    private NioEventLoopGroup group;
+    private Channel dnsChannel;
+    /**
+     * Number of queries per name, for any record type.
+     */
+    private final Map<String, AtomicInteger> queries = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        dnsChannel = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<DatagramChannel>() {
+                    @Override
+                    protected void initChannel(DatagramChannel ch) {
+                        ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(), new SimpleChannelInboundHandler<DatagramDnsQuery>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+                                DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+                                queries.computeIfAbsent(question.name(), n -> new AtomicInteger()).incrementAndGet();
+                                DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+                                response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion(question.name(), question.type()));
+                                if (question.name().equals(HOST + ".")) {
+                                    if (question.type() == DnsRecordType.A) {
+                                        response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(
+                                                question.name(), DnsRecordType.A, 60, Unpooled.wrappedBuffer(new byte[]{127, 0, 0, 1})));
+                                    }
+                                } else {
+                                    response.setCode(DnsResponseCode.NXDOMAIN);
+                                }
+                                ctx.writeAndFlush(response);
+                            }
+                        });
+                    }
+                })
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .sync()
+                .channel();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dnsChannel.close();
+        group.shutdownGracefully();
+    }
+
+    private int queries(String host) {
+        AtomicInteger count = queries.get(host + ".");
+        return count == null ? 0 : count.get();
+    }
+
+    private HttpClient newClient(NettyTransportResources resources, String host, NettyClientMetrics metrics) {
+        return PROVIDER.newBuilder()
+                .baseUri(URI.create("http://" + host + ":" + netty.getEndpoint().getPort()))
+                .property(NettyClientProperties.TRANSPORT_RESOURCES, resources)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build();
+    }
+
+    @Test
+    public void cachedAcrossClients() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                NettyTest.computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (NettyTransportResources resources = new NettyTransportResources(1, NettyTransport.NIO, List.of((InetSocketAddress) dnsChannel.localAddress()))) {
+            int queriesAfterFirst = 0;
+            for (int i = 0; i < 2; i++) {
+                // a new client each time, so that the connection is not reused
+                try (HttpClient client = newClient(resources, HOST, metrics);
+                     HttpResponse response = client.createRequest(Method.GET)
+                             .appendPathPart("foo")
+                             .execute().toCompletableFuture()
+                             .get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+                if (i == 0) {
+                    queriesAfterFirst = queries(HOST);
+                    Assertions.assertTrue(queriesAfterFirst > 0);
+                }
+            }
+            Assertions.assertEquals(queriesAfterFirst, queries(HOST));
+        }
+        Assertions.assertEquals(2, metrics.getDnsResolutions());
+        Assertions.assertEquals(1, metrics.getDnsCacheHits());
+        Assertions.assertEquals(0, metrics.getDnsFailures());
+    }
+
+    @Test
+    public void negativeCaching() throws Exception {
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (NettyTransportResources resources = new NettyTransportResources(1, NettyTransport.NIO, List.of((InetSocketAddress) dnsChannel.localAddress()))) {
+            int queriesAfterFirst = 0;
+            for (int i = 0; i < 2; i++) {
+                try (HttpClient client = newClient(resources, MISSING_HOST, metrics)) {
+                    ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> client.createRequest(Method.GET)
+                            .appendPathPart("foo")
+                            .execute().toCompletableFuture()
+                            .get());
+                    Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+                    Assertions.assertInstanceOf(UnknownHostException.class, cause);
+                }
+                if (i == 0) {
+                    queriesAfterFirst = queries(MISSING_HOST);
+                    Assertions.assertTrue(queriesAfterFirst > 0);
+                }
+            }
+            Assertions.assertEquals(queriesAfterFirst, queries(MISSING_HOST));
+        }
+        Assertions.assertEquals(2, metrics.getDnsResolutions());
+        Assertions.assertEquals(1, metrics.getDnsCacheHits());
+        Assertions.assertEquals(2, metrics.getDnsFailures());
+    }
+}
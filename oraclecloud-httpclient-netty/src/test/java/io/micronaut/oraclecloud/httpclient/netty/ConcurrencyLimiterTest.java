@@ -0,0 +1,101 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+class ConcurrencyLimiterTest {
+    private static final long LATENCY = 1_000_000;
+
+    private static List<CompletableFuture<Void>> acquire(ConcurrencyLimiter limiter, int n) {
+        List<CompletableFuture<Void>> permits = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            permits.add(limiter.acquire());
+        }
+        return permits;
+    }
+
+    @Test
+    public void queueAboveLimit() {
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(metrics, Integer.MAX_VALUE);
+        List<CompletableFuture<Void>> permits = acquire(limiter, ConcurrencyLimiter.INITIAL_LIMIT + 2);
+        Assertions.assertTrue(permits.get(ConcurrencyLimiter.INITIAL_LIMIT - 1).isDone());
+        Assertions.assertFalse(permits.get(ConcurrencyLimiter.INITIAL_LIMIT).isDone());
+        Assertions.assertEquals(2, metrics.getConcurrencyQueueDepth());
+
+        // a cancelled waiter gives up its place
+        permits.get(ConcurrencyLimiter.INITIAL_LIMIT).cancel(false);
+        limiter.release(LATENCY, false);
+        Assertions.assertTrue(permits.get(ConcurrencyLimiter.INITIAL_LIMIT + 1).isDone());
+        Assertions.assertEquals(0, metrics.getConcurrencyQueueDepth());
+    }
+
+    @Test
+    public void cancelWhileQueued() {
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(metrics, Integer.MAX_VALUE);
+        List<CompletableFuture<Void>> permits = acquire(limiter, ConcurrencyLimiter.INITIAL_LIMIT + 1);
+        Assertions.assertEquals(1, metrics.getConcurrencyQueueDepth());
+
+        permits.get(ConcurrencyLimiter.INITIAL_LIMIT).cancel(false);
+        Assertions.assertEquals(0, metrics.getConcurrencyQueueDepth());
+    }
+
+    @Test
+    public void rejectWhenQueueFull() {
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(metrics, 1);
+        List<CompletableFuture<Void>> permits = acquire(limiter, ConcurrencyLimiter.INITIAL_LIMIT + 2);
+        Assertions.assertFalse(permits.get(ConcurrencyLimiter.INITIAL_LIMIT).isDone());
+        CompletableFuture<Void> rejected = permits.get(ConcurrencyLimiter.INITIAL_LIMIT + 1);
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        Assertions.assertEquals(1, metrics.getConcurrencyQueueDepth());
+        Assertions.assertEquals(1, metrics.getConcurrencyRejections());
+    }
+
+    @Test
+    public void increaseAndDecrease() {
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(metrics, Integer.MAX_VALUE);
+        for (int round = 0; round < 10; round++) {
+            int limit = limiter.limit();
+            acquire(limiter, limit);
+            for (int i = 0; i < limit; i++) {
+                limiter.release(LATENCY, false);
+            }
+        }
+        int grown = limiter.limit();
+        Assertions.assertTrue(grown > ConcurrencyLimiter.INITIAL_LIMIT);
+        Assertions.assertEquals(grown, metrics.getConcurrencyLimit());
+
+        // a burst of 429s only counts once
+        acquire(limiter, grown);
+        for (int i = 0; i < grown; i++) {
+            limiter.release(-1, true);
+        }
+        Assertions.assertTrue(limiter.limit() < grown);
+        Assertions.assertTrue(limiter.limit() >= (int) (grown * 0.9));
+
+        // a single slow response is tolerated
+        int limit = limiter.limit();
+        acquire(limiter, limit);
+        limiter.release(10 * LATENCY, false);
+        Assertions.assertEquals(limit, limiter.limit());
+
+        // mostly slow responses count as overload
+        for (int i = 1; i < limit; i++) {
+            limiter.release(10 * LATENCY, false);
+        }
+        Assertions.assertTrue(limiter.limit() < limit);
+
+        limiter.close();
+        Assertions.assertEquals(0, metrics.getConcurrencyLimit());
+    }
+}
@@ -0,0 +1,221 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.oracle.bmc.http.client.HttpClient;
+import com.oracle.bmc.http.client.HttpResponse;
+import com.oracle.bmc.http.client.Method;
+import com.oracle.bmc.http.client.StandardClientProperties;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Http2Test {
+    private SelfSignedCertificate cert;
+    private NioEventLoopGroup group;
+    private Channel serverChannel;
+    private KeyStore trustStore;
+
+    private final Set<Channel> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger http2Requests = new AtomicInteger();
+    private final AtomicInteger http1Requests = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        cert = new SelfSignedCertificate();
+        group = new NioEventLoopGroup(1);
+        trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("foo", cert.cert());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        group.shutdownGracefully();
+    }
+
+    private void startServer(String... protocols) throws Exception {
+        SslContext sslContext = SslContextBuilder.forServer(cert.key(), cert.cert())
+                .applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        protocols))
+                .build();
+        serverChannel = new ServerBootstrap()
+                .group(group, group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        connections.add(ch);
+                        ch.pipeline()
+                                .addLast(sslContext.newHandler(ch.alloc()))
+                                .addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                                    @Override
+                                    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                                        if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                                            ctx.pipeline().addLast(
+                                                    Http2FrameCodecBuilder.forServer().build(),
+                                                    new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+                                                        @Override
+                                                        protected void initChannel(Channel stream) {
+                                                            stream.pipeline()
+                                                                    .addLast(new Http2StreamFrameToHttpObjectCodec(true))
+                                                                    .addLast(new HttpObjectAggregator(1024))
+                                                                    .addLast(new EchoHandler(http2Requests));
+                                                        }
+                                                    }));
+                                        } else {
+                                            ctx.pipeline()
+                                                    .addLast(new HttpServerCodec())
+                                                    .addLast(new HttpObjectAggregator(1024))
+                                                    .addLast(new EchoHandler(http1Requests));
+                                        }
+                                    }
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).syncUninterruptibly().channel();
+    }
+
+    private HttpClient createClient() {
+        return new NettyHttpProvider().newBuilder()
+                .baseUri(URI.create("https://localhost:" + ((ServerSocketChannel) serverChannel).localAddress().getPort()))
+                .property(StandardClientProperties.TRUST_STORE, trustStore)
+                .property(StandardClientProperties.BUFFER_REQUEST, false)
+                .property(NettyClientProperties.HTTP2, true)
+                .build();
+    }
+
+    private static void sendRequests(HttpClient client) throws Exception {
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.createRequest(Method.POST)
+                    .appendPathPart("foo")
+                    .body("request" + i)
+                    .execute().toCompletableFuture());
+        }
+        futures.add(client.createRequest(Method.POST)
+                .appendPathPart("foo")
+                .body(new ByteArrayInputStream("streamed".getBytes(StandardCharsets.UTF_8)))
+                .execute().toCompletableFuture());
+        for (int i = 0; i < futures.size(); i++) {
+            try (HttpResponse response = futures.get(i).get()) {
+                Assertions.assertEquals(200, response.status());
+                Assertions.assertEquals(i < 5 ? "request" + i : "streamed", response.textBody().toCompletableFuture().get());
+            }
+        }
+    }
+
+    @Test
+    public void multiplexed() throws Exception {
+        startServer(ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+
+        try (HttpClient client = createClient()) {
+            sendRequests(client);
+            sendRequests(client);
+        }
+
+        Assertions.assertEquals(12, http2Requests.get());
+        Assertions.assertEquals(0, http1Requests.get());
+        Assertions.assertEquals(1, connections.size());
+    }
+
+    @Test
+    public void fallbackToHttp1() throws Exception {
+        startServer(ApplicationProtocolNames.HTTP_1_1);
+
+        try (HttpClient client = createClient()) {
+            sendRequests(client);
+        }
+
+        Assertions.assertEquals(0, http2Requests.get());
+        Assertions.assertEquals(6, http1Requests.get());
+    }
+
+    @Test
+    public void fileBody(@TempDir Path tempDir) throws Exception {
+        startServer(ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+        Path file = tempDir.resolve("body.txt");
+        Files.write(file, "file body".getBytes(StandardCharsets.UTF_8));
+
+        for (boolean http2 : new boolean[]{true, false}) {
+            // TLS, so the file is sent in chunks instead of with a FileRegion
+            try (HttpClient client = new NettyHttpProvider().newBuilder()
+                    .baseUri(URI.create("https://localhost:" + ((ServerSocketChannel) serverChannel).localAddress().getPort()))
+                    .property(StandardClientProperties.TRUST_STORE, trustStore)
+                    .property(NettyClientProperties.HTTP2, http2)
+                    .build();
+                 HttpResponse response = client.createRequest(Method.POST)
+                         .appendPathPart("foo")
+                         .body(file)
+                         .execute().toCompletableFuture().get()) {
+                Assertions.assertEquals("file body", response.textBody().toCompletableFuture().get());
+            }
+        }
+
+        Assertions.assertEquals(1, http2Requests.get());
+        Assertions.assertEquals(1, http1Requests.get());
+    }
+
+    private static final class EchoHandler extends ChannelInboundHandlerAdapter {
+        private final AtomicInteger counter;
+
+        EchoHandler(AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            FullHttpRequest request = (FullHttpRequest) msg;
+            counter.incrementAndGet();
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(
+                    HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer(request.content()));
+            response.headers().add(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+            request.release();
+            ctx.writeAndFlush(response);
+        }
+    }
+}
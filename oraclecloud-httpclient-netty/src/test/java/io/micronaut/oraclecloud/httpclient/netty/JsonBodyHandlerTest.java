@@ -0,0 +1,139 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+class JsonBodyHandlerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static DefaultHttpContent content(String s) {
+        return new DefaultHttpContent(Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        EmbeddedChannel embeddedChannel = new EmbeddedChannel();
+        JsonBodyHandler handler = new JsonBodyHandler(MAPPER);
+        embeddedChannel.pipeline().addLast(handler);
+
+        DefaultHttpContent first = content("[{\"foo\": \"b");
+        embeddedChannel.writeInbound(first);
+        // released immediately
+        Assertions.assertEquals(0, first.refCnt());
+        Assertions.assertFalse(handler.future.isDone());
+        embeddedChannel.writeInbound(content("ar\"}, 1.5, 1.100000000000000000001"));
+        Assertions.assertFalse(handler.future.isDone());
+        embeddedChannel.writeInbound(content("]"));
+        // done as soon as the root value is complete
+        Assertions.assertTrue(handler.future.isDone());
+        embeddedChannel.writeInbound(new DefaultLastHttpContent());
+        Assertions.assertSame(LastHttpContent.EMPTY_LAST_CONTENT, embeddedChannel.readInbound());
+        Assertions.assertNull(embeddedChannel.pipeline().get(JsonBodyHandler.class));
+
+        TokenBuffer tokens = handler.future.get();
+        List<?> value = MAPPER.readValue(JsonBodyHandler.asParser(tokens, MAPPER), List.class);
+        Assertions.assertEquals(3, value.size());
+        Assertions.assertEquals("bar", ((Map<?, ?>) value.get(0)).get("foo"));
+        Assertions.assertEquals(1.5, value.get(1));
+    }
+
+    private static TokenBuffer parseAll(ObjectMapper mapper, String json) throws Exception {
+        JsonBodyHandler handler = new JsonBodyHandler(mapper);
+        handler.parseAll(Unpooled.wrappedBuffer(json.getBytes(StandardCharsets.UTF_8)));
+        return handler.future.get();
+    }
+
+    @Test
+    public void floats() throws Exception {
+        String json = "{\"foo\": 1.5, \"bar\": 1.100000000000000000001}";
+        TokenBuffer tokens = parseAll(MAPPER, json);
+
+        // untyped targets see the same values as when parsing the text
+        Map<?, ?> map = MAPPER.readValue(JsonBodyHandler.asParser(tokens, MAPPER), Map.class);
+        Assertions.assertEquals(MAPPER.readValue(json, Map.class), map);
+        Assertions.assertEquals(Double.class, map.get("bar").getClass());
+        JsonNode tree = MAPPER.readTree(JsonBodyHandler.asParser(tokens, MAPPER));
+        Assertions.assertEquals(MAPPER.readTree(json), tree);
+
+        // the precision is kept when binding to BigDecimal
+        Map<String, BigDecimal> decimals = MAPPER.readValue(JsonBodyHandler.asParser(tokens, MAPPER), new TypeReference<>() {
+        });
+        Assertions.assertEquals(new BigDecimal("1.100000000000000000001"), decimals.get("bar"));
+
+        ObjectMapper bigDecimalMapper = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        Map<?, ?> bigDecimalMap = bigDecimalMapper.readValue(
+                JsonBodyHandler.asParser(parseAll(bigDecimalMapper, json), bigDecimalMapper), Map.class);
+        Assertions.assertEquals(new BigDecimal("1.100000000000000000001"), bigDecimalMap.get("bar"));
+    }
+
+    @Test
+    public void scalarAtEnd() throws Exception {
+        EmbeddedChannel embeddedChannel = new EmbeddedChannel();
+        JsonBodyHandler handler = new JsonBodyHandler(MAPPER);
+        embeddedChannel.pipeline().addLast(handler);
+
+        embeddedChannel.writeInbound(content("12"));
+        // the number could continue
+        Assertions.assertFalse(handler.future.isDone());
+        embeddedChannel.writeInbound(new DefaultLastHttpContent(Unpooled.wrappedBuffer("3".getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertEquals(123, MAPPER.readValue(JsonBodyHandler.asParser(handler.future.get(), MAPPER), Integer.class));
+    }
+
+    @Test
+    public void parseError() throws Exception {
+        EmbeddedChannel embeddedChannel = new EmbeddedChannel();
+        JsonBodyHandler handler = new JsonBodyHandler(MAPPER);
+        embeddedChannel.pipeline().addLast(handler);
+
+        embeddedChannel.writeInbound(content("{\"foo\" 1}"));
+        Assertions.assertTrue(handler.future.isDone());
+        // the rest of the body is discarded
+        DefaultHttpContent rest = content("more");
+        embeddedChannel.writeInbound(rest);
+        Assertions.assertEquals(0, rest.refCnt());
+        embeddedChannel.writeInbound(new DefaultLastHttpContent());
+        Assertions.assertSame(LastHttpContent.EMPTY_LAST_CONTENT, embeddedChannel.readInbound());
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> handler.future.get());
+        Assertions.assertTrue(e.getCause() instanceof JsonParseException);
+    }
+
+    @Test
+    public void parseAll() throws Exception {
+        JsonBodyHandler handler = new JsonBodyHandler(MAPPER);
+        ByteBuf body = Unpooled.wrappedBuffer("{\"foo\": 1}".getBytes(StandardCharsets.UTF_8));
+        handler.parseAll(body);
+        Assertions.assertEquals(0, body.refCnt());
+        Assertions.assertEquals(1, MAPPER.readValue(JsonBodyHandler.asParser(handler.future.get(), MAPPER), Map.class).get("foo"));
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        EmbeddedChannel embeddedChannel = new EmbeddedChannel();
+        JsonBodyHandler handler = new JsonBodyHandler(MAPPER);
+        embeddedChannel.pipeline().addLast(handler);
+
+        embeddedChannel.writeInbound(content("{\"foo\""));
+        embeddedChannel.pipeline().remove(handler);
+        Assertions.assertThrows(CancellationException.class, () -> handler.future.get());
+    }
+}
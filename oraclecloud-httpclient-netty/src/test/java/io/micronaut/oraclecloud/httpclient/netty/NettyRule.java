@@ -77,7 +77,9 @@ public class NettyRule implements BeforeEachCallback, AfterEachCallback {
                                 .addLast(new ReadTimeoutHandler(5, TimeUnit.SECONDS))
                                 .addLast(new LoggingHandler(LogLevel.INFO))
                                 .addLast(new HttpServerCodec());
-                        if (aggregate) {
+                        // the flag is reset by the next test, while late content of this connection may still arrive
+                        boolean aggregateChannel = aggregate;
+                        if (aggregateChannel) {
                             ch.pipeline().addLast(new HttpObjectAggregator(4096) {
                                 @Override
                                 protected Object newContinueResponse(HttpMessage start, int maxContentLength, ChannelPipeline pipeline) {
@@ -106,7 +108,7 @@ public class NettyRule implements BeforeEachCallback, AfterEachCallback {
                         ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
                                     @Override
                                     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-                                        if (msg instanceof HttpContent && !aggregate) {
+                                        if (msg instanceof HttpContent && !aggregateChannel) {
                                             ((HttpContent) msg).release();
                                             return;
                                         }
@@ -8,19 +8,52 @@ import com.oracle.bmc.http.client.Method;
 import com.oracle.bmc.http.client.Serialization;
 import com.oracle.bmc.http.client.StandardClientProperties;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ExtendWith(NettyRule.class)
 public class NettyTest {
@@ -84,6 +117,31 @@ public class NettyTest {
         }
     }
 
+    @Test
+    public void streamingRequestBufferedSpilled() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals(6, request.headers().getInt("content-length"));
+            Assertions.assertEquals("xyzxyz", ((FullHttpRequest) request).content().toString(StandardCharsets.UTF_8));
+
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.BUFFER_SPILL_THRESHOLD, 4)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.POST)
+                    .appendPathPart("foo")
+                    .body(new ByteArrayInputStream("xyzxyz".getBytes(StandardCharsets.UTF_8)))
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        }
+    }
+
     @Test
     public void streamingRequestChunked() throws Exception {
         netty.aggregate = false;
@@ -111,6 +169,42 @@ public class NettyTest {
         }
     }
 
+    @Test
+    public void blockingIoExecutor() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            tasks.incrementAndGet();
+            return new Thread(r);
+        });
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(StandardClientProperties.BUFFER_REQUEST, false)
+                .property(NettyClientProperties.BLOCKING_IO_EXECUTOR, executor)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.POST)
+                    .appendPathPart("foo")
+                    .body(new ByteArrayInputStream("xyz".getBytes(StandardCharsets.UTF_8)))
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        } finally {
+            executor.shutdown();
+            Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, tasks.get());
+        Assertions.assertEquals(0, metrics.getBlockingIoQueueDepth());
+        Assertions.assertEquals(0, metrics.getBlockingIoActiveThreads());
+    }
+
     @Test
     public void streamingRequestBufferedKnownSize() throws Exception {
         netty.handleOneRequest((ctx, request) -> {
@@ -137,4 +231,1161 @@ public class NettyTest {
             }
         }
     }
+
+    @Test
+    public void connectionReuse() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                serverChannels.add(ctx.channel());
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("bar".getBytes(StandardCharsets.UTF_8)));
+                computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            for (int i = 0; i < 2; i++) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals("bar", response.textBody().toCompletableFuture().get());
+                }
+            }
+        }
+        Assertions.assertEquals(2, serverChannels.size());
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(1));
+    }
+
+    @Test
+    public void connectionCloseNotReused() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                serverChannels.add(ctx.channel());
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().add(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            for (int i = 0; i < 2; i++) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+            }
+        }
+        Assertions.assertEquals(2, serverChannels.size());
+        Assertions.assertNotSame(serverChannels.get(0), serverChannels.get(1));
+    }
+
+    @Test
+    public void maxConnections() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                serverChannels.add(ctx.channel());
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.MAX_CONNECTIONS, 1)
+                .build()) {
+            List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture());
+            }
+            for (CompletableFuture<HttpResponse> future : futures) {
+                try (HttpResponse response = future.get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+            }
+        }
+        Assertions.assertEquals(3, serverChannels.size());
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(1));
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(2));
+    }
+
+    @Test
+    public void sharedTransportResources() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        HttpClient client1 = PROVIDER.newBuilder().baseUri(netty.getEndpoint()).build();
+        HttpClient client2 = PROVIDER.newBuilder().baseUri(netty.getEndpoint()).build();
+        NettyTransportResources resources = ((NettyHttpClient) client1).transportResources;
+        Assertions.assertSame(resources, ((NettyHttpClient) client2).transportResources);
+
+        client1.close();
+        client1.close();
+        Assertions.assertFalse(resources.isClosed());
+        try (HttpResponse response = client2.createRequest(Method.GET)
+                .appendPathPart("foo")
+                .execute().toCompletableFuture()
+                .get()) {
+            Assertions.assertEquals(200, response.status());
+        }
+
+        client2.close();
+        Assertions.assertTrue(resources.isClosed());
+    }
+
+    @Test
+    public void userTransportResources() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        try (NettyTransportResources resources = new NettyTransportResources(1)) {
+            try (HttpClient client = PROVIDER.newBuilder()
+                    .baseUri(netty.getEndpoint())
+                    .property(NettyClientProperties.TRANSPORT_RESOURCES, resources)
+                    .build()) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+            }
+            Assertions.assertFalse(resources.isClosed());
+        }
+    }
+
+    @Test
+    public void explicitTransport() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.TRANSPORT, NettyTransport.NIO)
+                .build()) {
+            Assertions.assertEquals(NettyTransport.NIO, ((NettyHttpClient) client).transportResources.getTransport());
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        }
+    }
+
+    @Test
+    public void unavailableTransport() {
+        for (NettyTransport transport : NettyTransport.values()) {
+            if (!transport.isAvailable()) {
+                Assertions.assertThrows(IllegalStateException.class, () -> PROVIDER.newBuilder()
+                        .baseUri(netty.getEndpoint())
+                        .property(NettyClientProperties.TRANSPORT, transport)
+                        .build());
+            }
+        }
+        Assertions.assertTrue(NettyTransport.bestAvailable().isAvailable());
+    }
+
+    private void expectEcho(String expectedBody) {
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals(HttpMethod.PUT, request.method());
+            Assertions.assertEquals(expectedBody.length(), request.headers().getInt("content-length"));
+            Assertions.assertEquals(expectedBody, ((FullHttpRequest) request).content().toString(StandardCharsets.UTF_8));
+
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+    }
+
+    @Test
+    public void fileBody(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("body.txt");
+        Files.write(file, "file body".getBytes(StandardCharsets.UTF_8));
+        expectEcho("file body");
+        expectEcho("file body");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            for (Object body : Arrays.asList(file, file.toFile())) {
+                try (HttpResponse response = client.createRequest(Method.PUT)
+                        .appendPathPart("foo")
+                        .body(body)
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fileChannelBody(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("body.txt");
+        Files.write(file, "skip file body".getBytes(StandardCharsets.UTF_8));
+        expectEcho("file body");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build();
+             FileChannel channel = FileChannel.open(file)) {
+            channel.position(5);
+            try (HttpResponse response = client.createRequest(Method.PUT)
+                    .appendPathPart("foo")
+                    .body(channel)
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+            // the user channel stays open
+            Assertions.assertTrue(channel.isOpen());
+        }
+    }
+
+    @Test
+    public void byteArrayAndBufferBody() throws Exception {
+        expectEcho("array body");
+        expectEcho("buffer body");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            ByteBuffer buffer = ByteBuffer.wrap("xxbuffer body".getBytes(StandardCharsets.UTF_8));
+            buffer.position(2);
+            for (Object body : Arrays.asList("array body".getBytes(StandardCharsets.UTF_8), buffer)) {
+                try (HttpResponse response = client.createRequest(Method.PUT)
+                        .appendPathPart("foo")
+                        .body(body)
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals(200, response.status());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void jsonResponseChunked() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer("[{\"foo\": \"bar\"}, ", StandardCharsets.UTF_8)));
+            ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer("{\"foo\": \"baz\"}]", StandardCharsets.UTF_8)));
+            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                List<Map> body = response.listBody(Map.class).toCompletableFuture().get();
+                Assertions.assertEquals(2, body.size());
+                Assertions.assertEquals("baz", body.get(1).get("foo"));
+            }
+        }
+    }
+
+    private void respondChunked(List<Channel> serverChannels, String... chunks) {
+        netty.handleOneRequest((ctx, request) -> {
+            serverChannels.add(ctx.channel());
+            DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            for (String chunk : chunks) {
+                ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer(chunk, StandardCharsets.UTF_8)));
+            }
+            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        });
+    }
+
+    /**
+     * Subscriber that requests one item at a time, and cancels after {@code limit} items.
+     */
+    private static final class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final StringBuilder builder = new StringBuilder();
+        final int limit;
+        Flow.Subscription subscription;
+        int received = 0;
+
+        CollectingSubscriber(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            builder.append(StandardCharsets.UTF_8.decode(item));
+            if (++received == limit) {
+                subscription.cancel();
+                result.complete(builder.toString());
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(builder.toString());
+        }
+    }
+
+    @Test
+    public void publishBody() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        respondChunked(serverChannels, "foo", "bar", "baz");
+        respondChunked(serverChannels, "foo");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                CollectingSubscriber subscriber = new CollectingSubscriber(-1);
+                ((PublishingHttpResponse) response).publishBody().subscribe(subscriber);
+                Assertions.assertEquals("foobarbaz", subscriber.result.get());
+            }
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("foo", response.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(1));
+    }
+
+    @Test
+    public void publishBodyCancel() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        respondChunked(serverChannels, "foo", "bar", "baz");
+        respondChunked(serverChannels, "foo");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                CollectingSubscriber subscriber = new CollectingSubscriber(1);
+                ((PublishingHttpResponse) response).publishBody().subscribe(subscriber);
+                Assertions.assertEquals("foo", subscriber.result.get());
+            }
+            // the rest of the body is discarded, the connection is still usable
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("foo", response.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(1));
+    }
+
+    /**
+     * Responds with {@code count} chunks of {@code chunkSize} bytes and completes {@code lastWrite} with the future of
+     * the last write.
+     */
+    private void respondLarge(CompletableFuture<ChannelFuture> lastWrite, int chunkSize, int count) {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            for (int i = 0; i < count; i++) {
+                ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[chunkSize])));
+            }
+            lastWrite.complete(ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT));
+        });
+    }
+
+    @Test
+    public void publishBodyBackpressure() throws Exception {
+        int chunkSize = 64 * 1024;
+        int count = 256;
+        CompletableFuture<ChannelFuture> lastWrite = new CompletableFuture<>();
+        respondLarge(lastWrite, chunkSize, count);
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                AtomicLong received = new AtomicLong();
+                CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+                CompletableFuture<Void> complete = new CompletableFuture<>();
+                ((PublishingHttpResponse) response).publishBody().subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription s) {
+                        s.request(1);
+                        subscription.complete(s);
+                    }
+
+                    @Override
+                    public void onNext(ByteBuffer item) {
+                        received.addAndGet(item.remaining());
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        complete.completeExceptionally(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        complete.complete(null);
+                    }
+                });
+
+                // without demand the client stops reading, so the server cannot finish writing
+                ChannelFuture last = lastWrite.get();
+                Assertions.assertFalse(last.await(500, TimeUnit.MILLISECONDS));
+                Assertions.assertTrue(received.get() < (long) chunkSize * count);
+
+                subscription.get().request(Long.MAX_VALUE);
+                complete.get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals((long) chunkSize * count, received.get());
+                Assertions.assertTrue(last.await(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void streamBodyReadahead() throws Exception {
+        int chunkSize = 64 * 1024;
+        int count = 256;
+        CompletableFuture<ChannelFuture> lastWrite = new CompletableFuture<>();
+        respondLarge(lastWrite, chunkSize, count);
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                InputStream stream = response.streamBody().toCompletableFuture().get();
+
+                // once the readahead window is full the client stops reading, so the server cannot finish writing
+                ChannelFuture last = lastWrite.get();
+                Assertions.assertFalse(last.await(500, TimeUnit.MILLISECONDS));
+                Assertions.assertTrue(stream.available() < chunkSize * count);
+
+                Assertions.assertEquals(chunkSize * count, stream.readAllBytes().length);
+                Assertions.assertTrue(last.await(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void streamBodyCloseEarly() throws Exception {
+        List<Channel> serverChannels = new ArrayList<>();
+        CompletableFuture<ChannelHandlerContext> firstResponse = new CompletableFuture<>();
+        netty.handleOneRequest((ctx, request) -> {
+            serverChannels.add(ctx.channel());
+            DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("foo", StandardCharsets.UTF_8)));
+            firstResponse.complete(ctx);
+        });
+        respondChunked(serverChannels, "foo");
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.MAX_CONNECTIONS, 1)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                InputStream stream = response.streamBody().toCompletableFuture().get();
+                Assertions.assertEquals('f', stream.read());
+                stream.close();
+            }
+            // the rest of the body arrives after the stream was closed, and is discarded
+            ChannelHandlerContext ctx = firstResponse.get();
+            ctx.executor().execute(() -> {
+                ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer("bar", StandardCharsets.UTF_8)));
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            });
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("foo", response.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertSame(serverChannels.get(0), serverChannels.get(1));
+    }
+
+    @Test
+    public void readTimeout() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            // never respond
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(StandardClientProperties.READ_TIMEOUT, Duration.ofMillis(200))
+                .build()) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get());
+            Assertions.assertInstanceOf(SocketTimeoutException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            // never respond
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .attribute(NettyRequestAttributes.DEADLINE, Instant.now().plusMillis(200))
+                    .execute().toCompletableFuture()
+                    .get());
+            Assertions.assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void deadlineBody() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            // never finish the body
+            ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("foo", StandardCharsets.UTF_8)));
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .attribute(NettyRequestAttributes.DEADLINE, Instant.now().plusMillis(500))
+                    .execute().toCompletableFuture()
+                    .get()) {
+                ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> response.textBody().toCompletableFuture().get());
+                Assertions.assertInstanceOf(DeadlineExceededException.class, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void deadlinePassed() throws Exception {
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .build()) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .attribute(NettyRequestAttributes.DEADLINE, Instant.now().minusSeconds(1))
+                    .execute().toCompletableFuture()
+                    .get());
+            Assertions.assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void hedging() throws Exception {
+        int warmup = 20;
+        for (int i = 0; i < warmup; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("fast".getBytes(StandardCharsets.UTF_8)));
+                computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+        netty.handleOneRequest((ctx, request) -> {
+            // slow backend, never responds
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("hedge".getBytes(StandardCharsets.UTF_8)));
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.HEDGE_PERCENTILE, 0.9)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            for (int i = 0; i < warmup; i++) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals("fast", response.textBody().toCompletableFuture().get());
+                }
+            }
+            Assertions.assertEquals(0, metrics.getHedgedRequests());
+
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("hedge", response.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertEquals(1, metrics.getHedgedRequests());
+        Assertions.assertEquals(1, metrics.getHedgeWins());
+    }
+
+    @Test
+    public void hedgingCoalesced() throws Exception {
+        int warmup = 20;
+        for (int i = 0; i < warmup; i++) {
+            netty.handleOneRequest((ctx, request) -> {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("fast".getBytes(StandardCharsets.UTF_8)));
+                computeContentLength(response);
+                ctx.writeAndFlush(response);
+            });
+        }
+        List<List<String>> signatures = Collections.synchronizedList(new ArrayList<>());
+        netty.handleOneRequest((ctx, request) -> {
+            // slow backend, never responds
+            signatures.add(request.headers().getAll("x-signature"));
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            signatures.add(request.headers().getAll("x-signature"));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("hedge".getBytes(StandardCharsets.UTF_8)));
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        AtomicInteger signed = new AtomicInteger();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.HEDGE_PERCENTILE, 0.9)
+                .property(NettyClientProperties.COALESCE_REQUESTS, true)
+                .registerRequestInterceptor(0, r -> r.header("x-signature", String.valueOf(signed.incrementAndGet())))
+                .build()) {
+            for (int i = 0; i < warmup; i++) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals("fast", response.textBody().toCompletableFuture().get());
+                }
+            }
+
+            int before = signed.get();
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("hedge", response.textBody().toCompletableFuture().get());
+            }
+            // the request is signed ahead of coalescing, the hedge is signed again
+            Assertions.assertEquals(
+                    Arrays.asList(
+                            Collections.singletonList(String.valueOf(before + 1)),
+                            Collections.singletonList(String.valueOf(before + 2))),
+                    signatures);
+        }
+    }
+
+    @Test
+    public void coalescing() throws Exception {
+        CompletableFuture<ChannelHandlerContext> pending = new CompletableFuture<>();
+        netty.handleOneRequest((ctx, request) -> pending.complete(ctx));
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.COALESCE_REQUESTS, true)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .header("opc-request-id", "request-" + i)
+                        .execute().toCompletableFuture());
+            }
+            Assertions.assertEquals(2, metrics.getCoalescedRequests());
+
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("bar".getBytes(StandardCharsets.UTF_8)));
+            computeContentLength(response);
+            pending.get(5, TimeUnit.SECONDS).writeAndFlush(response);
+
+            for (CompletableFuture<HttpResponse> future : futures) {
+                try (HttpResponse r = future.get()) {
+                    Assertions.assertEquals(200, r.status());
+                    Assertions.assertEquals("bar", r.textBody().toCompletableFuture().get());
+                }
+            }
+
+            // the next request is sent again
+            netty.handleOneRequest((ctx, request) -> {
+                DefaultFullHttpResponse next = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("baz".getBytes(StandardCharsets.UTF_8)));
+                computeContentLength(next);
+                ctx.writeAndFlush(next);
+            });
+            try (HttpResponse r = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("baz", r.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertEquals(2, metrics.getCoalescedRequests());
+    }
+
+    @Test
+    public void coalescingPrincipal() throws Exception {
+        CompletableFuture<ChannelHandlerContext> pending1 = new CompletableFuture<>();
+        CompletableFuture<ChannelHandlerContext> pending2 = new CompletableFuture<>();
+        netty.handleOneRequest((ctx, request) -> pending1.complete(ctx));
+        netty.handleOneRequest((ctx, request) -> pending2.complete(ctx));
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.COALESCE_REQUESTS, true)
+                .property(NettyClientProperties.METRICS, metrics)
+                .registerRequestInterceptor(0, r -> r.header("authorization", "Signature keyId=\"" + r.attribute("principal") + "\",signature=\"x\""))
+                .build()) {
+            List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (String principal : List.of("a", "b")) {
+                futures.add(client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .attribute("principal", principal)
+                        .execute().toCompletableFuture());
+            }
+            // both requests are sent
+            for (CompletableFuture<ChannelHandlerContext> pending : List.of(pending1, pending2)) {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                computeContentLength(response);
+                pending.get(5, TimeUnit.SECONDS).writeAndFlush(response);
+            }
+            for (CompletableFuture<HttpResponse> future : futures) {
+                future.get().close();
+            }
+        }
+        Assertions.assertEquals(0, metrics.getCoalescedRequests());
+    }
+
+    @Test
+    public void coalescingFollowerDeadline() throws Exception {
+        CompletableFuture<ChannelHandlerContext> pending = new CompletableFuture<>();
+        netty.handleOneRequest((ctx, request) -> pending.complete(ctx));
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.COALESCE_REQUESTS, true)
+                .build()) {
+            CompletableFuture<HttpResponse> leader = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture();
+            CompletableFuture<HttpResponse> follower = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .attribute(NettyRequestAttributes.DEADLINE, Instant.now().plusMillis(200))
+                    .execute().toCompletableFuture();
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, follower::get);
+            Assertions.assertInstanceOf(DeadlineExceededException.class, e.getCause());
+
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            pending.get(5, TimeUnit.SECONDS).writeAndFlush(response);
+            try (HttpResponse r = leader.get()) {
+                Assertions.assertEquals(200, r.status());
+            }
+        }
+    }
+
+    @Test
+    public void coalescingLeaderCancel() throws Exception {
+        CompletableFuture<ChannelHandlerContext> pending = new CompletableFuture<>();
+        netty.handleOneRequest((ctx, request) -> pending.complete(ctx));
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.COALESCE_REQUESTS, true)
+                .build()) {
+            CompletableFuture<HttpResponse> leader = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture();
+            CompletableFuture<HttpResponse> follower = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture();
+            Channel leaderChannel = pending.get(5, TimeUnit.SECONDS).channel();
+
+            leader.cancel(false);
+            // the leader exchange is aborted, and the follower is sent separately
+            Assertions.assertTrue(leaderChannel.closeFuture().await(5, TimeUnit.SECONDS));
+            try (HttpResponse r = follower.get()) {
+                Assertions.assertEquals(200, r.status());
+            }
+        }
+    }
+
+    @Test
+    public void responseCache() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertFalse(request.headers().contains(HttpHeaderNames.IF_NONE_MATCH));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("v1".getBytes(StandardCharsets.UTF_8)));
+            response.headers().add(HttpHeaderNames.ETAG, "\"1\"");
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("\"1\"", request.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+            response.headers().add(HttpHeaderNames.ETAG, "\"1\"");
+            response.headers().add("opc-request-id", "second");
+            ctx.writeAndFlush(response);
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("\"1\"", request.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("v2".getBytes(StandardCharsets.UTF_8)));
+            response.headers().add(HttpHeaderNames.ETAG, "\"2\"");
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.RESPONSE_CACHE_MAX_BYTES, 1024L)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET).appendPathPart("foo").execute().toCompletableFuture().get()) {
+                Assertions.assertEquals(200, response.status());
+                Assertions.assertEquals("v1", response.textBody().toCompletableFuture().get());
+            }
+            try (HttpResponse response = client.createRequest(Method.GET).appendPathPart("foo").execute().toCompletableFuture().get()) {
+                Assertions.assertEquals(200, response.status());
+                Assertions.assertEquals(List.of("second"), response.headers().get("opc-request-id"));
+                Assertions.assertEquals("v1", response.textBody().toCompletableFuture().get());
+            }
+            Assertions.assertEquals(1, metrics.getResponseCacheHits());
+            try (HttpResponse response = client.createRequest(Method.GET).appendPathPart("foo").execute().toCompletableFuture().get()) {
+                Assertions.assertEquals("v2", response.textBody().toCompletableFuture().get());
+            }
+        }
+        Assertions.assertEquals(1, metrics.getResponseCacheHits());
+    }
+
+    @Test
+    public void preconnect() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        CountDownLatch accepted = new CountDownLatch(2);
+        netty.channelCustomizer = ch -> {
+            connections.incrementAndGet();
+            accepted.countDown();
+        };
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.PRECONNECT, 2)
+                .property(NettyClientProperties.PRECONNECT_AWAIT, Duration.ofSeconds(5))
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            Assertions.assertEquals(2, metrics.getPreconnectedConnections());
+            Assertions.assertTrue(metrics.getPreconnectTimeNanos() > 0);
+
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        }
+        // the server may not have accepted the unused connection yet
+        Assertions.assertTrue(accepted.await(5, TimeUnit.SECONDS));
+        // the request used one of the preconnected connections
+        Assertions.assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void expectContinue() throws Exception {
+        netty.handleContinue = true;
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("100-continue", request.headers().get(HttpHeaderNames.EXPECT));
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("xyz", ((FullHttpRequest) request).content().toString(StandardCharsets.UTF_8));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(StandardClientProperties.BUFFER_REQUEST, false)
+                .property(NettyClientProperties.EXPECT_CONTINUE_TIMEOUT, Duration.ofSeconds(30))
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.PUT)
+                    .appendPathPart("foo")
+                    .header("Expect", "100-continue")
+                    .body(new ByteArrayInputStream("xyz".getBytes(StandardCharsets.UTF_8)), 3)
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        }
+    }
+
+    @Test
+    public void expectContinueRejected() throws Exception {
+        netty.handleContinue = true;
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.PRECONDITION_FAILED);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        AtomicInteger reads = new AtomicInteger();
+        ByteArrayInputStream body = new ByteArrayInputStream("xyz".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                reads.incrementAndGet();
+                return super.read(b, off, len);
+            }
+        };
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(StandardClientProperties.BUFFER_REQUEST, false)
+                .property(NettyClientProperties.EXPECT_CONTINUE_TIMEOUT, Duration.ofSeconds(30))
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.PUT)
+                    .appendPathPart("foo")
+                    .header("Expect", "100-continue")
+                    .body(body, 3)
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(412, response.status());
+            }
+        }
+        Assertions.assertEquals(0, reads.get());
+    }
+
+    @Test
+    public void listener() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("foo".getBytes(StandardCharsets.UTF_8)));
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger bytesSent = new AtomicInteger();
+        AtomicInteger bytesReceived = new AtomicInteger();
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        metrics.addListener(new NettyClientListener() {
+            @Override
+            public void onConnect(String host, long nanos, boolean success) {
+                events.add("connect " + success);
+            }
+
+            @Override
+            public void onRequestWritten(String host, String method, long nanos) {
+                events.add("written " + method);
+            }
+
+            @Override
+            public void onResponseHeaders(String host, String method, int status, long nanos) {
+                events.add("headers " + method + " " + status);
+            }
+
+            @Override
+            public void onResponseComplete(String host, String method, int status, long nanos) {
+                events.add("complete " + method + " " + status);
+            }
+
+            @Override
+            public void onBytesWritten(String host, long bytes) {
+                bytesSent.addAndGet((int) bytes);
+            }
+
+            @Override
+            public void onBytesRead(String host, long bytes) {
+                bytesReceived.addAndGet((int) bytes);
+            }
+        });
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.GET)
+                    .appendPathPart("foo")
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals("foo", response.textBody().toCompletableFuture().get());
+                Assertions.assertEquals(1, metrics.getOpenConnections());
+            }
+        }
+        // the connect listener may run after the pool has already written the request
+        Assertions.assertTrue(events.remove("connect true"));
+        Assertions.assertEquals(List.of("written GET", "headers GET 200", "complete GET 200"), events);
+        Assertions.assertTrue(bytesSent.get() > 0);
+        Assertions.assertTrue(bytesReceived.get() > "foo".length());
+        Assertions.assertEquals(0, metrics.getPendingConnectionAcquisitions());
+    }
+
+    @Test
+    public void jfrEvents(@TempDir Path tmp) throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer("foo".getBytes(StandardCharsets.UTF_8)));
+            response.headers().add("opc-request-id", "abc");
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        // no event is allocated while the event type is disabled
+        Assertions.assertNull(JfrEvents.exchangeEvent());
+
+        Path dump = tmp.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.micronaut.oraclecloud.httpclient.Connect");
+            recording.enable("io.micronaut.oraclecloud.httpclient.Exchange");
+            recording.start();
+            Assertions.assertNotNull(JfrEvents.exchangeEvent());
+            try (HttpClient client = PROVIDER.newBuilder()
+                    .baseUri(netty.getEndpoint())
+                    .build()) {
+                try (HttpResponse response = client.createRequest(Method.GET)
+                        .appendPathPart("foo")
+                        .appendPathPart("ocid1.bucket.oc1..xyz")
+                        .query("q", "1")
+                        .execute().toCompletableFuture()
+                        .get()) {
+                    Assertions.assertEquals("foo", response.textBody().toCompletableFuture().get());
+                }
+            }
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Assertions.assertEquals(1, events.stream().filter(e -> e.getEventType().getName().endsWith(".Connect")).count());
+        RecordedEvent exchange = events.stream()
+                .filter(e -> e.getEventType().getName().endsWith(".Exchange"))
+                .findAny().orElseThrow();
+        Assertions.assertEquals("GET", exchange.getString("method"));
+        Assertions.assertEquals("/foo/{ocid}", exchange.getString("pathTemplate"));
+        Assertions.assertEquals(200, exchange.getInt("status"));
+        Assertions.assertEquals("abc", exchange.getString("opcRequestId"));
+        Assertions.assertEquals(3, exchange.getLong("bytesReceived"));
+    }
+
+    @Test
+    public void retry() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("xyz", ((FullHttpRequest) request).content().toString(StandardCharsets.UTF_8));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.TOO_MANY_REQUESTS);
+            response.headers().add(HttpHeaderNames.RETRY_AFTER, "0");
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+        netty.handleOneRequest((ctx, request) -> {
+            Assertions.assertEquals("xyz", ((FullHttpRequest) request).content().toString(StandardCharsets.UTF_8));
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.RETRY_MAX_ATTEMPTS, 3)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.POST)
+                    .appendPathPart("foo")
+                    .body(new ByteArrayInputStream("xyz".getBytes(StandardCharsets.UTF_8)), 3)
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(200, response.status());
+            }
+        }
+        Assertions.assertEquals(1, metrics.getRetries());
+    }
+
+    @Test
+    public void retryNotIdempotent() throws Exception {
+        netty.handleOneRequest((ctx, request) -> {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            computeContentLength(response);
+            ctx.writeAndFlush(response);
+        });
+
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = PROVIDER.newBuilder()
+                .baseUri(netty.getEndpoint())
+                .property(NettyClientProperties.RETRY_MAX_ATTEMPTS, 3)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            try (HttpResponse response = client.createRequest(Method.POST)
+                    .appendPathPart("foo")
+                    .body(new ByteArrayInputStream("xyz".getBytes(StandardCharsets.UTF_8)), 3)
+                    .execute().toCompletableFuture()
+                    .get()) {
+                Assertions.assertEquals(500, response.status());
+            }
+        }
+        Assertions.assertEquals(0, metrics.getRetries());
+    }
 }
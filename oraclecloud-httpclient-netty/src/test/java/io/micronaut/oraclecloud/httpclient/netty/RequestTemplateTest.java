@@ -0,0 +1,30 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+class RequestTemplateTest {
+    @Test
+    public void requestTarget() {
+        RequestTemplate template = new RequestTemplate(URI.create("https://example.com:8443/20160918"));
+        Assertions.assertEquals("example.com", template.host);
+        Assertions.assertEquals("/20160918/foo", template.requestTarget(template.baseUri + "/foo", ""));
+        Assertions.assertEquals("/20160918/foo?a=b&c=%20", template.requestTarget(template.baseUri + "/foo", "a=b&c=%20"));
+    }
+
+    @Test
+    public void emptyPath() {
+        RequestTemplate template = new RequestTemplate(URI.create("http://example.com"));
+        Assertions.assertEquals("/", template.requestTarget(template.baseUri, ""));
+        Assertions.assertEquals("/?a=b", template.requestTarget(template.baseUri, "a=b"));
+    }
+
+    @Test
+    public void baseWithQuery() {
+        RequestTemplate template = new RequestTemplate(URI.create("http://example.com/foo?x=y"));
+        // falls back to parsing the full URI
+        Assertions.assertEquals("/foo?x=y", template.requestTarget(template.baseUri, ""));
+    }
+}
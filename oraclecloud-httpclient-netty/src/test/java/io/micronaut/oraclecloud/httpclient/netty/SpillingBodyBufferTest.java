@@ -0,0 +1,73 @@
+package io.micronaut.oraclecloud.httpclient.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class SpillingBodyBufferTest {
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void inMemory() throws Exception {
+        ByteBuf buf = SpillingBodyBuffer.read(stream("foobar"), -1, ByteBufAllocator.DEFAULT, 6);
+        Assertions.assertFalse(buf instanceof SpillingBodyBuffer.MappedFileBuf);
+        Assertions.assertEquals("foobar", buf.toString(StandardCharsets.UTF_8));
+        buf.release();
+    }
+
+    @Test
+    public void neverSpill() throws Exception {
+        ByteBuf buf = SpillingBodyBuffer.read(stream("foobar"), -1, ByteBufAllocator.DEFAULT, Integer.MAX_VALUE);
+        Assertions.assertFalse(buf instanceof SpillingBodyBuffer.MappedFileBuf);
+        Assertions.assertEquals("foobar", buf.toString(StandardCharsets.UTF_8));
+        buf.release();
+    }
+
+    @Test
+    public void spilled() throws Exception {
+        ByteBuf buf = SpillingBodyBuffer.read(stream("foobar"), -1, ByteBufAllocator.DEFAULT, 5);
+        Assertions.assertTrue(buf instanceof SpillingBodyBuffer.MappedFileBuf);
+        Path file = ((SpillingBodyBuffer.MappedFileBuf) buf).file;
+        Assertions.assertTrue(Files.exists(file));
+        Assertions.assertEquals("foobar", buf.toString(StandardCharsets.UTF_8));
+
+        // a request copy shares the file
+        ByteBuf copy = buf.retainedDuplicate();
+        buf.release();
+        Assertions.assertTrue(Files.exists(file));
+        Assertions.assertEquals("foobar", copy.toString(StandardCharsets.UTF_8));
+        copy.release();
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void knownLengthAboveThreshold() throws Exception {
+        ByteBuf buf = SpillingBodyBuffer.read(stream("foobar"), 6, ByteBufAllocator.DEFAULT, 5);
+        Assertions.assertTrue(buf instanceof SpillingBodyBuffer.MappedFileBuf);
+        Assertions.assertEquals("foobar", buf.toString(StandardCharsets.UTF_8));
+        buf.release();
+    }
+
+    @Test
+    public void knownLengthTooLarge() {
+        InputStream stream = new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("Should not read a body that cannot be buffered");
+            }
+        };
+        IOException e = Assertions.assertThrows(IOException.class, () ->
+                SpillingBodyBuffer.read(stream, Integer.MAX_VALUE + 1L, ByteBufAllocator.DEFAULT, 5));
+        Assertions.assertTrue(e.getMessage().contains("too large"));
+    }
+}
@@ -1,6 +1,8 @@
 package io.micronaut.oraclecloud.httpclient.netty;
 
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -16,6 +18,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class StreamReadingHandlerTest {
     private ExecutorService executor;
@@ -123,4 +126,37 @@ class StreamReadingHandlerTest {
             Assertions.assertEquals("bar", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void readahead() throws Throwable {
+        AtomicInteger reads = new AtomicInteger();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void read(ChannelHandlerContext ctx) throws Exception {
+                reads.incrementAndGet();
+                super.read(ctx);
+            }
+        });
+        StreamReadingHandler handler = new StreamReadingHandler();
+        channel.pipeline().addLast(handler);
+        Assertions.assertFalse(channel.config().isAutoRead());
+        InputStream stream = handler.getInputStream();
+        int chunkSize = StreamReadingHandler.READAHEAD_BYTES / 4;
+
+        reads.set(0);
+        for (int i = 0; i < 4; i++) {
+            channel.writeInbound(Unpooled.wrappedBuffer(new byte[chunkSize]));
+        }
+        // the window is full after the fourth chunk, so no more reads are requested
+        Assertions.assertEquals(3, reads.get());
+        Assertions.assertEquals(StreamReadingHandler.READAHEAD_BYTES, stream.available());
+
+        // consuming data resumes reading
+        Assertions.assertEquals(chunkSize, stream.read(new byte[chunkSize]));
+        Assertions.assertEquals(4, reads.get());
+
+        channel.pipeline().remove(handler);
+        Assertions.assertTrue(channel.config().isAutoRead());
+        Assertions.assertEquals(3 * chunkSize, stream.readAllBytes().length);
+    }
+}
@@ -1,11 +1,13 @@
 package io.micronaut.oraclecloud.httpclient.netty;
 
 import com.oracle.bmc.http.client.HttpClient;
+import com.oracle.bmc.http.client.HttpClientBuilder;
 import com.oracle.bmc.http.client.KeyStoreWithPassword;
 import com.oracle.bmc.http.client.Method;
 import com.oracle.bmc.http.client.StandardClientProperties;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
@@ -14,11 +16,17 @@ import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslContext;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
 import io.netty.resolver.AddressResolver;
@@ -190,6 +198,94 @@ public class TlsTest {
         }
     }
 
+    @Test
+    public void sessionResumptionTrustStore() throws Exception {
+        sessionResumption(false);
+    }
+
+    @Test
+    public void sessionResumptionSslContext() throws Exception {
+        sessionResumption(true);
+    }
+
+    private void sessionResumption(boolean userSslContext) throws Exception {
+        // every response closes the connection, the following handshakes should resume the first session
+
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext serverSslContext = SslContextBuilder.forServer(cert.key(), cert.cert()).build();
+
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        Channel serverChannel = new ServerBootstrap()
+                .group(group, group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) throws Exception {
+                        ch.pipeline()
+                                .addLast(serverSslContext.newHandler(ch.alloc()))
+                                .addLast(new HttpServerCodec())
+                                .addLast(new HttpObjectAggregator(1024))
+                                .addLast(new ChannelInboundHandlerAdapter() {
+                                    @Override
+                                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                        ((FullHttpRequest) msg).release();
+                                        DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                                        response.headers().add(HttpHeaderNames.CONTENT_LENGTH, 0);
+                                        response.headers().add(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                                        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                                    }
+                                });
+                    }
+                })
+                .bind(0).syncUninterruptibly().channel();
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("foo", cert.cert());
+
+        HttpClientBuilder builder = new NettyHttpProvider().newBuilder()
+                .baseUri(URI.create("https://localhost:" + ((ServerSocketChannel) serverChannel).localAddress().getPort()));
+        if (userSslContext) {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(trustStore);
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, tmf.getTrustManagers(), null);
+            builder.property(StandardClientProperties.SSL_CONTEXT, sslContext);
+        } else {
+            builder.property(StandardClientProperties.TRUST_STORE, trustStore);
+        }
+        NettyClientMetrics metrics = new NettyClientMetrics();
+        try (HttpClient client = builder
+                .property(NettyClientProperties.TLS_SESSION_CACHE_SIZE, 16)
+                .property(NettyClientProperties.METRICS, metrics)
+                .build()) {
+            for (int i = 0; i < 3; i++) {
+                client.createRequest(Method.GET).execute().toCompletableFuture().get().close();
+            }
+        } finally {
+            serverChannel.close();
+            group.shutdownGracefully();
+        }
+        Assertions.assertEquals(1, metrics.getTlsFullHandshakes());
+        Assertions.assertEquals(2, metrics.getTlsSessionsResumed());
+    }
+
+    @Test
+    public void sslProvider() throws Exception {
+        try (HttpClient client = new NettyHttpProvider().newBuilder()
+                .baseUri(URI.create("https://localhost"))
+                .build()) {
+            // OpenSSL is used iff tcnative is on the classpath
+            Assertions.assertEquals(OpenSsl.isAvailable(), ((NettyHttpClient) client).sslContext instanceof OpenSslContext);
+        }
+        try (HttpClient client = new NettyHttpProvider().newBuilder()
+                .baseUri(URI.create("https://localhost"))
+                .property(NettyClientProperties.OPENSSL, false)
+                .build()) {
+            Assertions.assertTrue(((NettyHttpClient) client).sslContext instanceof JdkSslContext);
+        }
+    }
+
     @Test
     public void keyStore() throws Exception {
         // set a trust store, and a key store for the client cert